@@ -0,0 +1,125 @@
+package datastruct.table;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Holds the values of a column whose type was inferred as numeric or temporal. The values are stored in primitive
+ * arrays with one entry per table row, whereas the rows with missing or unparseable values are marked in the null
+ * bitmap. Integers, years and dates (as epoch days) are stored in the long array, decimals, percentages and currency
+ * amounts in the double array.
+ * <p>
+ * A column loaded from the JSON of a table holds only its statistics and its number of rows, as the values are
+ * printed only in the table rows, see hasValues.
+ */
+public class TypedColumn implements Serializable {
+    public static final int HISTOGRAM_BINS = 10;
+    public static final double[] QUANTILES = {0.25, 0.5, 0.75};
+
+    public enum ValueType {
+        INTEGER, DECIMAL, PERCENTAGE, YEAR, DATE, CURRENCY;
+
+        public boolean isIntegral() {
+            return this == INTEGER || this == YEAR || this == DATE;
+        }
+    }
+
+    public ValueType type;
+    public long[] long_values;
+    public double[] double_values;
+    public BitSet nulls;
+    public int num_rows;
+
+    //the summary of the non-null values
+    public int num_values;
+    public double min;
+    public double max;
+    public double[] quantiles;
+    public int[] histogram;
+
+    public TypedColumn(ValueType type, int num_rows) {
+        this.type = type;
+        this.num_rows = num_rows;
+        this.nulls = new BitSet(num_rows);
+        if (type.isIntegral()) {
+            long_values = new long[num_rows];
+        } else {
+            double_values = new double[num_rows];
+        }
+    }
+
+    /**
+     * Create a column which holds only the statistics of its values, e.g. when loaded from the JSON of a table. The
+     * statistics are set by the caller, and the values, the null bitmap and computeStatistics are not available.
+     *
+     * @param type
+     * @param num_rows
+     * @return
+     */
+    public static TypedColumn withStatisticsOnly(ValueType type, int num_rows) {
+        TypedColumn column = new TypedColumn(type);
+        column.num_rows = num_rows;
+        return column;
+    }
+
+    private TypedColumn(ValueType type) {
+        this.type = type;
+    }
+
+    /**
+     * Whether the column holds its values, or only their statistics.
+     *
+     * @return
+     */
+    public boolean hasValues() {
+        return long_values != null || double_values != null;
+    }
+
+    public int getNumRows() {
+        return num_rows;
+    }
+
+    public double getValue(int row) {
+        if (!hasValues()) {
+            throw new IllegalStateException("The column holds only the statistics of its values.");
+        }
+        return long_values != null ? long_values[row] : double_values[row];
+    }
+
+    /**
+     * Compute the min/max, the quantiles and a histogram with a fixed number of equal-width bins over the non-null
+     * values of the column.
+     */
+    public void computeStatistics() {
+        if (!hasValues()) {
+            throw new IllegalStateException("The column holds only the statistics of its values.");
+        }
+        double[] sorted = new double[num_rows - nulls.cardinality()];
+        int k = 0;
+        for (int i = 0; i < num_rows; i++) {
+            if (!nulls.get(i)) {
+                sorted[k++] = getValue(i);
+            }
+        }
+        num_values = sorted.length;
+        quantiles = new double[QUANTILES.length];
+        histogram = new int[HISTOGRAM_BINS];
+        if (num_values == 0) {
+            return;
+        }
+
+        Arrays.sort(sorted);
+        min = sorted[0];
+        max = sorted[num_values - 1];
+        for (int i = 0; i < QUANTILES.length; i++) {
+            quantiles[i] = sorted[(int) Math.floor(QUANTILES[i] * (num_values - 1))];
+        }
+
+        double bin_width = (max - min) / HISTOGRAM_BINS;
+        for (double value : sorted) {
+            int bin = bin_width == 0 ? 0 : (int) ((value - min) / bin_width);
+            histogram[Math.min(bin, HISTOGRAM_BINS - 1)]++;
+        }
+    }
+}
@@ -21,6 +21,9 @@ public class WikiColumnHeader implements Serializable {
     //store the distribution of the data for this column
     public Map<Object, Integer> value_dist;
 
+    //the values of the column in case it is numeric or temporal, null for textual columns
+    public TypedColumn typed_column;
+
 
     public WikiColumnHeader(String column_name, int row_span, int col_span) {
         this.column_name = column_name;
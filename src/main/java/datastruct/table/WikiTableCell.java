@@ -34,18 +34,39 @@ public class WikiTableCell implements Serializable {
         this.col_header = col_header;
         this.value = cell.text();
 
-        if (cell.hasAttr("colspan")) {
-            col_span = Integer.parseInt(cell.attr("colspan"));
-        }
-        if (cell.hasAttr("rowspan")) {
-            row_span = Integer.parseInt(cell.attr("rowspan"));
-        }
+        col_span = parseSpan(cell, "colspan");
+        row_span = parseSpan(cell, "rowspan");
 
         //check if it contains any hyperlink
         this.linkValues(cell);
     }
 
 
+    /**
+     * Parse the colspan or rowspan attribute of a cell. Malformed values such as "2;" are parsed from their leading
+     * digits, whereas missing or invalid values default to 1. As in HTML, a rowspan of 0 denotes that the cell spans
+     * until the end of its row group, and the spans are limited to 1000 columns and 65534 rows.
+     *
+     * @param cell
+     * @param attr
+     * @return
+     */
+    public static int parseSpan(Element cell, String attr) {
+        String span = cell.attr(attr).trim();
+        int end = 0;
+        while (end < span.length() && end < 6 && Character.isDigit(span.charAt(end))) {
+            end++;
+        }
+        if (end == 0) {
+            return 1;
+        }
+        int value = Integer.parseInt(span.substring(0, end));
+        if (attr.equals("rowspan")) {
+            return Math.min(value, 65534);
+        }
+        return Math.max(1, Math.min(value, 1000));
+    }
+
     public String toString() {
         StringBuffer sb = new StringBuffer();
         sb.append(value.toString());
@@ -0,0 +1,54 @@
+package extractor;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of articles for the table extraction. The articles are returned as raw records, which are turned into
+ * their HTML content through toHTML, such that the more expensive extraction of the HTML runs in the parsing tasks
+ * and not on the thread which reads the articles.
+ */
+public interface ArticleSource extends Closeable {
+    /**
+     * Return the raw record of the next article, or null once all the articles are read.
+     *
+     * @return
+     * @throws IOException
+     */
+    String nextArticle() throws IOException;
+
+    /**
+     * Extract the HTML content from the raw record of an article. We return null in case the record has no HTML
+     * content.
+     *
+     * @param article
+     * @return
+     */
+    default String toHTML(String article) {
+        return article;
+    }
+
+    /**
+     * The number of raw records which were skipped in toHTML as they were malformed.
+     *
+     * @return
+     */
+    default int getSkippedRecords() {
+        return 0;
+    }
+
+    /**
+     * Open the source for the input format set in the options.
+     *
+     * @param file
+     * @param options
+     * @return
+     * @throws IOException
+     */
+    static ArticleSource open(String file, ParseOptions options) throws IOException {
+        if (options.input_format.equals("html_dump")) {
+            return new HTMLDumpArticleSource(file, options.dump_threads, options.batch_bytes * 4);
+        }
+        return new LineArticleSource(file);
+    }
+}
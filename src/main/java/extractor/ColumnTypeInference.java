@@ -0,0 +1,246 @@
+package extractor;
+
+import datastruct.table.TypedColumn;
+import datastruct.table.TypedColumn.ValueType;
+import datastruct.table.WikiColumnHeader;
+import datastruct.table.WikiTable;
+import datastruct.table.WikiTableCell;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Infers the type of the columns of a table after it has been parsed. A column is typed as integer, decimal,
+ * percentage, year, date or currency, if most of its non-empty values can be parsed into that type. The values of
+ * typed columns are stored as primitive arrays in the column header, along with their summary statistics, such that
+ * the numeric features are computed once at extraction time.
+ */
+public class ColumnTypeInference {
+    //the share of non-empty values which need to be parsed into a type in order to assign it to the column.
+    public static final double TYPE_THRESHOLD = 0.8;
+
+    //the non-numeric types in the order in which we prefer them, the numeric types are chosen by the values they cover.
+    private static final ValueType[] TYPE_PREFERENCE = {ValueType.DATE, ValueType.PERCENTAGE, ValueType.CURRENCY};
+
+    private static final Pattern FOOTNOTE = Pattern.compile("\\[[^\\]]*\\]");
+    private static final Pattern INTEGER = Pattern.compile("[-+]?(\\d{1,3}(,\\d{3})+|\\d+)");
+    private static final Pattern DECIMAL = Pattern.compile("[-+]?(\\d{1,3}(,\\d{3})+|\\d+)?\\.\\d+|" + INTEGER.pattern());
+    private static final Pattern PERCENTAGE = Pattern.compile("(" + DECIMAL.pattern() + ")\\s?%");
+    private static final Pattern YEAR = Pattern.compile("1[0-9]{3}|20[0-9]{2}");
+    private static final Pattern CURRENCY = Pattern.compile("(US\\$|A\\$|C\\$|\\$|\u20ac|\u00a3|\u00a5|\u20b9)\\s?(" + DECIMAL.pattern() + ")(\\s?(million|billion|m|bn))?", Pattern.CASE_INSENSITIVE);
+
+    //the shapes of the date formats, checked before the more expensive parsing with the formatters.
+    private static final Pattern DATE_SHAPE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}|\\d{1,2} [A-Za-z]{3,9} \\d{4}|[A-Za-z]{3,9}\\.? \\d{1,2}, \\d{4}");
+    //integer columns with values in the year range are typed as years only if their header refers to years.
+    private static final Pattern YEAR_HEADER = Pattern.compile("\\b(year|years|season|seasons|founded|established|opened|built|born|died|released)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ofPattern("uuuu-MM-dd", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("d MMMM uuuu", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("MMMM d, uuuu", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("d MMM uuuu", Locale.ENGLISH),
+            DateTimeFormatter.ofPattern("MMM d, uuuu", Locale.ENGLISH)
+    };
+
+    /**
+     * Infer the types for all the columns in the lowest level of the table header.
+     *
+     * @param tbl
+     */
+    public static void inferColumnTypes(WikiTable tbl) {
+        if (tbl.columns == null || tbl.columns.length == 0 || tbl.cells == null || tbl.cells.length == 0) {
+            return;
+        }
+        WikiColumnHeader[] header = tbl.columns[tbl.columns.length - 1];
+        for (int j = 0; j < header.length; j++) {
+            WikiColumnHeader col = header[j];
+            //columns spanning multiple slots are typed only once, from the slot where they start.
+            if (col == null || (j != 0 && header[j - 1] == col)) {
+                continue;
+            }
+            col.typed_column = inferColumnType(tbl, col, j);
+        }
+    }
+
+    /**
+     * Infer the type of the column at the given slot. We return null in case the column is textual. A type is no
+     * longer checked once it has failed on too many values to reach the threshold. Among the numeric types, a column
+     * with decimal values is typed as decimal even if most of its values are integers, and integer columns are typed
+     * as years only if all the integers are years and the header refers to years.
+     *
+     * @param tbl
+     * @param col
+     * @param col_idx
+     * @return
+     */
+    public static TypedColumn inferColumnType(WikiTable tbl, WikiColumnHeader col, int col_idx) {
+        int num_rows = tbl.cells.length;
+        String[] values = new String[num_rows];
+
+        int non_empty = 0;
+        for (int i = 0; i < num_rows; i++) {
+            WikiTableCell cell = col_idx < tbl.cells[i].length ? tbl.cells[i][col_idx] : null;
+            if (cell == null || cell.col_header != col) {
+                continue;
+            }
+            String value = normalizeValue(cell.value);
+            if (value.isEmpty()) {
+                continue;
+            }
+            values[i] = value;
+            non_empty++;
+        }
+        if (non_empty == 0) {
+            return null;
+        }
+
+        ValueType[] types = ValueType.values();
+        int[] type_counts = new int[types.length];
+        int[] type_misses = new int[types.length];
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            for (ValueType type : types) {
+                int t = type.ordinal();
+                if (non_empty - type_misses[t] < TYPE_THRESHOLD * non_empty) {
+                    continue;
+                }
+                if (parseValue(value, type) != null) {
+                    type_counts[t]++;
+                } else {
+                    type_misses[t]++;
+                }
+            }
+        }
+
+        for (ValueType type : TYPE_PREFERENCE) {
+            if (type_counts[type.ordinal()] >= TYPE_THRESHOLD * non_empty) {
+                return toTypedColumn(values, type);
+            }
+        }
+
+        //the decimals cover the integers, hence, a column which is not numeric in the wider type is textual.
+        int decimals = type_counts[ValueType.DECIMAL.ordinal()];
+        int integers = type_counts[ValueType.INTEGER.ordinal()];
+        int years = type_counts[ValueType.YEAR.ordinal()];
+        if (decimals < TYPE_THRESHOLD * non_empty) {
+            return null;
+        } else if (decimals > integers) {
+            return toTypedColumn(values, ValueType.DECIMAL);
+        } else if (years == integers && col.column_name != null && YEAR_HEADER.matcher(col.column_name).find()) {
+            return toTypedColumn(values, ValueType.YEAR);
+        }
+        return toTypedColumn(values, ValueType.INTEGER);
+    }
+
+    /**
+     * Parse all the values of the column into the primitive arrays of the given type.
+     *
+     * @param values
+     * @param type
+     * @return
+     */
+    private static TypedColumn toTypedColumn(String[] values, ValueType type) {
+        TypedColumn typed_column = new TypedColumn(type, values.length);
+        for (int i = 0; i < values.length; i++) {
+            Number value = values[i] == null ? null : parseValue(values[i], type);
+            if (value == null) {
+                typed_column.nulls.set(i);
+            } else if (type.isIntegral()) {
+                typed_column.long_values[i] = value.longValue();
+            } else {
+                typed_column.double_values[i] = value.doubleValue();
+            }
+        }
+        typed_column.computeStatistics();
+        return typed_column;
+    }
+
+    /**
+     * Parse a value into the given type. Dates are represented through their epoch day. In case the value cannot be
+     * parsed we return null.
+     *
+     * @param value
+     * @param type
+     * @return
+     */
+    public static Number parseValue(String value, ValueType type) {
+        try {
+            return parseValueUnchecked(value, type);
+        } catch (NumberFormatException e) {
+            //numbers which do not fit into a long
+            return null;
+        }
+    }
+
+    private static Number parseValueUnchecked(String value, ValueType type) {
+        Matcher m;
+        switch (type) {
+            case YEAR:
+                return YEAR.matcher(value).matches() ? Long.parseLong(value) : null;
+            case INTEGER:
+                return INTEGER.matcher(value).matches() ? Long.parseLong(stripNumber(value)) : null;
+            case DECIMAL:
+                return DECIMAL.matcher(value).matches() ? Double.parseDouble(stripNumber(value)) : null;
+            case PERCENTAGE:
+                m = PERCENTAGE.matcher(value);
+                return m.matches() ? Double.parseDouble(stripNumber(m.group(1))) : null;
+            case CURRENCY:
+                m = CURRENCY.matcher(value);
+                if (!m.matches()) {
+                    return null;
+                }
+                double amount = Double.parseDouble(stripNumber(m.group(2)));
+                String unit = m.group(m.groupCount());
+                if (unit != null) {
+                    amount *= unit.toLowerCase().startsWith("b") ? 1e9 : 1e6;
+                }
+                return amount;
+            case DATE:
+                if (!DATE_SHAPE.matcher(value).matches()) {
+                    return null;
+                }
+                for (DateTimeFormatter format : DATE_FORMATS) {
+                    //check the format without exceptions, only the resolving of a matching format may still fail.
+                    ParsePosition pos = new ParsePosition(0);
+                    if (format.parseUnresolved(value, pos) == null || pos.getErrorIndex() >= 0 || pos.getIndex() != value.length()) {
+                        continue;
+                    }
+                    try {
+                        return LocalDate.parse(value, format).toEpochDay();
+                    } catch (DateTimeParseException e) {
+                        //invalid dates, e.g. 31 February
+                    }
+                }
+                return null;
+        }
+        return null;
+    }
+
+    /**
+     * Remove the footnote markers, the non-breaking spaces and the dashes which are used to denote missing values.
+     *
+     * @param value
+     * @return
+     */
+    static String normalizeValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        value = FOOTNOTE.matcher(value.replace('\u00a0', ' ').replace('\u2212', '-')).replaceAll("").trim();
+        if (value.equals("-") || value.equals("\u2013") || value.equals("\u2014") || value.equals("?") || value.equalsIgnoreCase("n/a")) {
+            return "";
+        }
+        return value;
+    }
+
+    private static String stripNumber(String value) {
+        return value.replace(",", "").replace("+", "");
+    }
+}
@@ -0,0 +1,486 @@
+package extractor;
+
+import com.sun.management.ThreadMXBean;
+import io.FileUtils;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * End-to-end throughput regression harness for parse_tables. It runs the extraction over a sample corpus, which is
+ * either given or generated with a fixed seed, and records the articles/sec, tables/sec, MB/s in and out, the GC
+ * pauses, the allocated bytes and the peak RSS into a JSON report. The report can be compared against a stored
+ * baseline with configurable regression thresholds, where the run fails if the throughput drops, the memory grows, or
+ * the extracted output changes.
+ * <p>
+ * Since the articles are parsed in parallel, the order of the output lines and the table ids depend on the scheduling.
+ * Therefore, the output is compared through the digest of its canonical form, with the lines sorted and the table ids
+ * masked. For runs with a single thread and no large articles the output is deterministic, and the exact digest of
+ * the output is compared as well.
+ * <p>
+ * The allocation is approximated by sampling the allocated bytes of all threads, and the peak RSS is read from
+ * /proc/self/status and covers the whole process, hence, the harness should run in its own JVM with a fixed -Xmx.
+ */
+public class ExtractionBenchmark {
+    private static final double MB = 1024.0 * 1024.0;
+
+    public static void main(String[] args) throws Exception {
+        String corpus = "", work_dir = "benchmark", report_file = "benchmark_report.json", baseline_file = "";
+        int num_articles = 2000, warmup_runs = 1;
+        long seed = 42;
+        double throughput_threshold = 0.1, memory_threshold = 0.2, gc_threshold = 0.5;
+
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-corpus")) {
+                corpus = args[++i];
+            } else if (args[i].equals("-work_dir")) {
+                work_dir = args[++i];
+            } else if (args[i].equals("-out")) {
+                report_file = args[++i];
+            } else if (args[i].equals("-baseline")) {
+                baseline_file = args[++i];
+            } else if (args[i].equals("-articles")) {
+                num_articles = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-warmup")) {
+                warmup_runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-throughput_threshold")) {
+                throughput_threshold = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-memory_threshold")) {
+                memory_threshold = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-gc_threshold")) {
+                gc_threshold = Double.parseDouble(args[++i]);
+            }
+        }
+        FileUtils.checkDir(work_dir);
+        if (corpus.isEmpty()) {
+            corpus = work_dir + "/corpus_" + seed + "_" + num_articles + ".txt";
+            generateCorpus(corpus, num_articles, seed);
+        }
+
+        Map<String, Object> report = runBenchmark(corpus, work_dir + "/output.json", args, warmup_runs);
+        String report_json = toJSON(report);
+        FileUtils.saveText(report_json, report_file);
+        System.out.println(report_json);
+
+        if (!baseline_file.isEmpty()) {
+            JSONObject baseline = new JSONObject(new String(Files.readAllBytes(Paths.get(baseline_file)), StandardCharsets.UTF_8));
+            List<String> regressions = compareToBaseline(report, baseline, throughput_threshold, memory_threshold, gc_threshold);
+            if (!regressions.isEmpty()) {
+                regressions.forEach(regression -> System.out.printf("REGRESSION: %s\n", regression));
+                System.exit(1);
+            }
+            System.out.println("No regressions against the baseline.");
+        }
+    }
+
+    /**
+     * Run the extraction over the corpus and measure it. The warmup runs are not measured. The parsing options are
+     * created anew for every run from the arguments, as the filter and the deduplication keep state across a run.
+     *
+     * @param corpus
+     * @param out_file
+     * @param option_args
+     * @param warmup_runs
+     * @return
+     * @throws IOException
+     */
+    public static Map<String, Object> runBenchmark(String corpus, String out_file, String[] option_args, int warmup_runs) throws IOException {
+        for (int i = 0; i < warmup_runs; i++) {
+            deleteOutput(out_file);
+            HTMLTableExtractor.parseHTMLTables(corpus, out_file, ParseOptions.fromArgs(option_args));
+        }
+        ParseOptions options = ParseOptions.fromArgs(option_args);
+        deleteOutput(out_file);
+
+        long[] corpus_stats = getCorpusStats(corpus, options.large_article_bytes);
+        long gc_time = 0, gc_count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc_time -= gc.getCollectionTime();
+            gc_count -= gc.getCollectionCount();
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        AllocationSampler sampler = new AllocationSampler();
+        sampler.start();
+
+        long start = System.nanoTime();
+        HTMLTableExtractor.parseHTMLTables(corpus, out_file, options);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long allocated = sampler.finish();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc_time += gc.getCollectionTime();
+            gc_count += gc.getCollectionCount();
+        }
+        long peak_heap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak_heap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        //the output is measured uncompressed, such that the file and the sharded output are comparable.
+        byte[] output = readOutput(out_file);
+        String[] digests = computeOutputDigests(output);
+        long tables = countTables(output);
+        long bytes_out = output.length;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("articles", corpus_stats[0]);
+        report.put("tables", tables);
+        report.put("seconds", seconds);
+        report.put("articles_per_sec", corpus_stats[0] / seconds);
+        report.put("tables_per_sec", tables / seconds);
+        report.put("mb_in_per_sec", corpus_stats[1] / MB / seconds);
+        report.put("mb_out_per_sec", bytes_out / MB / seconds);
+        report.put("gc_pause_ms", gc_time);
+        report.put("gc_count", gc_count);
+        report.put("allocated_mb", allocated / MB);
+        report.put("peak_heap_mb", peak_heap / MB);
+        report.put("peak_rss_mb", getPeakRSS() / MB);
+        report.put("deterministic", options.threads == 1 && corpus_stats[2] == 0);
+        report.put("output_sha256", digests[0]);
+        report.put("canonical_output_sha256", digests[1]);
+        report.put("threads", options.threads);
+        report.put("large_article_threads", options.large_article_threads);
+        report.put("batch_bytes", options.batch_bytes);
+        report.put("max_inflight_bytes", options.max_inflight_bytes);
+        report.put("max_heap_mb", Runtime.getRuntime().maxMemory() / MB);
+        return report;
+    }
+
+    /**
+     * Compare the report against the baseline. The throughput may drop by at most the throughput threshold, the
+     * allocation and the peak memory may grow by at most the memory threshold and the GC pauses by at most the GC
+     * threshold, all relative to the baseline. The output has to be identical.
+     *
+     * @param report
+     * @param baseline
+     * @param throughput_threshold
+     * @param memory_threshold
+     * @param gc_threshold
+     * @return the list of regressions, empty if there are none.
+     */
+    public static List<String> compareToBaseline(Map<String, Object> report, JSONObject baseline, double throughput_threshold,
+                                                 double memory_threshold, double gc_threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (String metric : new String[]{"articles_per_sec", "tables_per_sec", "mb_in_per_sec", "mb_out_per_sec"}) {
+            double value = ((Number) report.get(metric)).doubleValue(), base = baseline.getDouble(metric);
+            if (value < base * (1 - throughput_threshold)) {
+                regressions.add(String.format("%s dropped from %.2f to %.2f", metric, base, value));
+            }
+        }
+        for (String metric : new String[]{"allocated_mb", "peak_heap_mb", "peak_rss_mb"}) {
+            double value = ((Number) report.get(metric)).doubleValue(), base = baseline.getDouble(metric);
+            if (base > 0 && value > base * (1 + memory_threshold)) {
+                regressions.add(String.format("%s grew from %.2f to %.2f", metric, base, value));
+            }
+        }
+        double gc_pause = ((Number) report.get("gc_pause_ms")).doubleValue(), base_gc_pause = baseline.getDouble("gc_pause_ms");
+        if (gc_pause > Math.max(base_gc_pause, 10) * (1 + gc_threshold)) {
+            regressions.add(String.format("gc_pause_ms grew from %.0f to %.0f", base_gc_pause, gc_pause));
+        }
+
+        if (!report.get("canonical_output_sha256").equals(baseline.getString("canonical_output_sha256"))) {
+            regressions.add("the extracted output differs from the baseline");
+        } else if (Boolean.TRUE.equals(report.get("deterministic")) && baseline.optString("deterministic", "false").equals("true")
+                && !report.get("output_sha256").equals(baseline.getString("output_sha256"))) {
+            regressions.add("the extracted output is not byte-identical to the baseline");
+        }
+        return regressions;
+    }
+
+    /**
+     * Generate a corpus of articles in the format of crawl_table_articles. The articles contain sections with tables
+     * of varying size, with multi-level headers, row and column spans, numeric and textual columns, and labels which
+     * split the tables into sub-tables. The same seed always generates the same corpus.
+     *
+     * @param file
+     * @param num_articles
+     * @param seed
+     * @throws IOException
+     */
+    public static void generateCorpus(String file, int num_articles, long seed) throws IOException {
+        Random rand = new Random(seed);
+        String[] words = {"league", "season", "team", "club", "city", "river", "album", "song", "award", "election",
+                "party", "district", "station", "player", "coach", "record", "title", "cup", "final", "group"};
+        String[] sections = {"Results", "Career", "Discography", "Statistics", "Standings", "Awards", "Squad", "History"};
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int a = 0; a < num_articles; a++) {
+                String title = "Article " + a + " " + words[rand.nextInt(words.length)];
+                StringBuilder sb = new StringBuilder();
+                sb.append("<html><head><title>").append(title).append("</title></head><body>");
+                sb.append("<section data-mw-section-id=\"0\"><p>").append(title).append("</p></section>");
+
+                int num_sections = 1 + rand.nextInt(4);
+                for (int s = 1; s <= num_sections; s++) {
+                    sb.append("<section data-mw-section-id=\"").append(s).append("\"><h2>").append(sections[rand.nextInt(sections.length)]).append("</h2>");
+                    int num_tables = rand.nextInt(3);
+                    for (int t = 0; t < num_tables; t++) {
+                        appendTable(sb, rand, words);
+                    }
+                    sb.append("</section>");
+                }
+                sb.append("</body></html>");
+                writer.append(title).append("\t").append(sb.toString().replace("\n", "\\n")).append("\n");
+            }
+        }
+    }
+
+    private static void appendTable(StringBuilder sb, Random rand, String[] words) {
+        int num_cols = 2 + rand.nextInt(6);
+        int num_rows = 1 + (rand.nextInt(10) == 0 ? rand.nextInt(300) : rand.nextInt(20));
+        boolean multi_level = rand.nextInt(4) == 0;
+
+        sb.append("<table class=\"wikitable\"><caption>").append(words[rand.nextInt(words.length)]).append("</caption>");
+        if (multi_level) {
+            sb.append("<tr><th rowspan=\"2\">Name</th><th colspan=\"").append(num_cols - 1).append("\">").append(words[rand.nextInt(words.length)]).append("</th></tr>");
+            sb.append("<tr>");
+            for (int c = 1; c < num_cols; c++) {
+                sb.append("<th>").append(words[rand.nextInt(words.length)]).append(" ").append(c).append("</th>");
+            }
+            sb.append("</tr>");
+        } else {
+            sb.append("<tr><th>Name</th>");
+            for (int c = 1; c < num_cols; c++) {
+                sb.append("<th>").append(c == 1 ? "Year" : words[rand.nextInt(words.length)]).append("</th>");
+            }
+            sb.append("</tr>");
+        }
+
+        int pending_rowspan = 0;
+        for (int r = 0; r < num_rows; r++) {
+            if (r > 0 && rand.nextInt(40) == 0) {
+                sb.append("<tr><th colspan=\"").append(num_cols).append("\">Group ").append(r).append("</th></tr>");
+                pending_rowspan = 0;
+            }
+            sb.append("<tr>");
+            if (pending_rowspan > 0) {
+                pending_rowspan--;
+            } else if (rand.nextInt(10) == 0 && r < num_rows - 1) {
+                pending_rowspan = 1;
+                sb.append("<td rowspan=\"2\"><a href=\"./X\" title=\"").append(words[rand.nextInt(words.length)]).append("\">").append(words[rand.nextInt(words.length)]).append("</a></td>");
+            } else {
+                sb.append("<td><a href=\"./X\" title=\"").append(words[rand.nextInt(words.length)]).append("\">").append(words[rand.nextInt(words.length)]).append(" ").append(r).append("</a></td>");
+            }
+            for (int c = 1; c < num_cols; c++) {
+                if (c == 1) {
+                    sb.append("<td>").append(1950 + rand.nextInt(70)).append("</td>");
+                } else if (c % 3 == 0) {
+                    sb.append("<td>").append(rand.nextInt(100000) / 100.0).append("%</td>");
+                } else if (c % 2 == 0) {
+                    sb.append("<td>").append(rand.nextInt(5000)).append("</td>");
+                } else {
+                    sb.append("<td>").append(words[rand.nextInt(words.length)]).append("</td>");
+                }
+            }
+            sb.append("</tr>");
+        }
+        sb.append("</table>");
+    }
+
+    /**
+     * Count the articles, their bytes and the number of large articles in the corpus.
+     *
+     * @param corpus
+     * @param large_article_bytes
+     * @return
+     * @throws IOException
+     */
+    private static long[] getCorpusStats(String corpus, long large_article_bytes) throws IOException {
+        long articles = 0, large_articles = 0;
+        try (BufferedReader reader = FileUtils.getFileReader(corpus)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                articles++;
+                if (line.length() >= large_article_bytes) {
+                    large_articles++;
+                }
+            }
+        }
+        return new long[]{articles, new File(corpus).length(), large_articles};
+    }
+
+    /**
+     * Delete the output of a previous run, which in case of the sharded output is a directory of shards.
+     *
+     * @param out_file
+     * @throws IOException
+     */
+    private static void deleteOutput(String out_file) throws IOException {
+        File out = new File(out_file);
+        File[] files = out.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.deleteIfExists(out.toPath());
+    }
+
+    /**
+     * Read the whole output, where the shards of the sharded output are decompressed and concatenated in their order.
+     *
+     * @param out_file
+     * @return
+     * @throws IOException
+     */
+    private static byte[] readOutput(String out_file) throws IOException {
+        File out = new File(out_file);
+        if (!out.isDirectory()) {
+            return Files.readAllBytes(out.toPath());
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        for (File shard : ShardedOutputSink.listShards(out)) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(shard), 1 << 16)) {
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    output.write(buffer, 0, len);
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static long countTables(byte[] output) throws IOException {
+        long tables = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(output), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                for (int idx = line.indexOf("\"id\":"); idx != -1; idx = line.indexOf("\"id\":", idx + 1)) {
+                    tables++;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Compute the exact digest of the output, and the digest of its canonical form where the table ids are masked
+     * and the lines are sorted.
+     *
+     * @param output
+     * @return
+     * @throws IOException
+     */
+    private static String[] computeOutputDigests(byte[] output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(output), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.replaceAll("\"(canonical_)?id\":\\d+", "\"$1id\":0"));
+            }
+        }
+        Collections.sort(lines);
+        return new String[]{sha256(output), sha256(String.join("\n", lines).getBytes(StandardCharsets.UTF_8))};
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return ShardedOutputSink.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The peak resident set size of the process, or -1 if it is not available.
+     *
+     * @return
+     */
+    private static long getPeakRSS() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            //not available on this platform
+        }
+        return -1;
+    }
+
+    private static String toJSON(Map<String, Object> report) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : report.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append("\"").append(entry.getKey()).append("\":");
+            Object value = entry.getValue();
+            sb.append(value instanceof String ? "\"" + value + "\"" : value.toString());
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * Samples the bytes allocated by all the threads, and keeps for every thread the last value it has seen, such
+     * that the allocations of the pool threads are counted after they terminate.
+     */
+    private static class AllocationSampler extends Thread {
+        private ThreadMXBean thread_bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private Map<Long, Long> start_allocated = new HashMap<>();
+        private Map<Long, Long> allocated = new HashMap<>();
+        private volatile boolean running = true;
+
+        AllocationSampler() {
+            setDaemon(true);
+            long[] ids = thread_bean.getAllThreadIds();
+            long[] bytes = thread_bean.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                start_allocated.put(ids[i], Math.max(0, bytes[i]));
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private synchronized void sample() {
+            long[] ids = thread_bean.getAllThreadIds();
+            long[] bytes = thread_bean.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] > 0) {
+                    allocated.put(ids[i], bytes[i]);
+                }
+            }
+        }
+
+        synchronized long finish() {
+            running = false;
+            interrupt();
+            sample();
+            long total = 0;
+            for (Map.Entry<Long, Long> entry : allocated.entrySet()) {
+                total += entry.getValue() - start_allocated.getOrDefault(entry.getKey(), 0L);
+            }
+            return total;
+        }
+    }
+}
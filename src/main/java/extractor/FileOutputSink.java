@@ -0,0 +1,37 @@
+package extractor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends all the extracted tables into a single uncompressed file.
+ */
+public class FileOutputSink implements TableOutputSink {
+    private Writer writer;
+
+    public FileOutputSink(String out_file) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out_file, true), StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    @Override
+    public synchronized void write(String chunk, int num_tables, int min_table_id, int max_table_id) throws IOException {
+        writer.write(chunk);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * The output is appended to the file, hence, we only close it and keep what was written so far.
+     */
+    @Override
+    public synchronized void abort() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
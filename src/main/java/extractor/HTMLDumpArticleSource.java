@@ -0,0 +1,242 @@
+package extractor;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the articles directly from the Wikimedia Enterprise HTML dumps, which consist of ndjson files where every line
+ * is an article with its HTML content in "article_body.html". The dumps can be given as a single .ndjson, .ndjson.gz,
+ * .tar or .tar.gz file, or as a directory of such files.
+ * <p>
+ * Since gzip streams cannot be split, the parallelism is over the independent files: every file is decompressed on
+ * its own thread, and the raw article lines are handed over through a queue which is bounded by the bytes of the
+ * queued lines, such that a dump is never held entirely in memory, irrespective of the size of the articles. The
+ * lines are parsed as JSON only in toHTML, which runs in the parsing tasks, as a dump consisting of a single file is
+ * decompressed by a single thread. The multistream XML dumps are not supported, as they contain the wikitext and not
+ * the HTML of the articles.
+ */
+public class HTMLDumpArticleSource implements ArticleSource {
+    //marks the end of the articles in the queue.
+    private static final String EOF = new String();
+
+    private BlockingQueue<String> articles = new LinkedBlockingQueue<>();
+    //the budget of the queued lines, where the permits correspond to KB.
+    private Semaphore queued_bytes;
+    private int max_permits;
+    private AtomicReference<IOException> read_error = new AtomicReference<>();
+    private ExecutorService pool;
+    private boolean finished = false;
+    private AtomicInteger skipped_records = new AtomicInteger();
+
+    /**
+     * @param path        the dump file or a directory of dump files.
+     * @param threads     the number of files which are read in parallel.
+     * @param queue_bytes the amount of article lines which are read and not yet taken.
+     * @throws IOException
+     */
+    public HTMLDumpArticleSource(String path, int threads, long queue_bytes) throws IOException {
+        max_permits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, queue_bytes / 1024));
+        queued_bytes = new Semaphore(max_permits);
+        List<File> files = listDumpFiles(new File(path));
+        if (files.isEmpty()) {
+            throw new FileNotFoundException("No dump files found at " + path);
+        }
+
+        pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        for (File file : files) {
+            pool.submit(() -> {
+                try {
+                    readDumpFile(file);
+                } catch (IOException e) {
+                    read_error.compareAndSet(null, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    read_error.compareAndSet(null, new IOException("Failed reading the dump file " + file, e));
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    putArticle(EOF);
+                }
+            });
+        }
+        pool.shutdown();
+    }
+
+    @Override
+    public String nextArticle() throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            String article;
+            while ((article = articles.poll(1, TimeUnit.SECONDS)) == null) {
+                if (read_error.get() != null) {
+                    throw read_error.get();
+                }
+            }
+            if (article == EOF) {
+                finished = true;
+                if (read_error.get() != null) {
+                    throw read_error.get();
+                }
+                return null;
+            }
+            queued_bytes.release(getPermits(article));
+            return article;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the dump.", e);
+        }
+    }
+
+    /**
+     * Extract the HTML content of the article from its ndjson line. In case the HTML has no title, we add it from
+     * the article name. Malformed lines, e.g. truncated ones, are skipped and counted, such that they do not fail
+     * the remaining articles of their batch.
+     *
+     * @param article
+     * @return
+     */
+    @Override
+    public String toHTML(String article) {
+        JSONObject json;
+        try {
+            json = new JSONObject(article);
+        } catch (JSONException e) {
+            skipped_records.incrementAndGet();
+            return null;
+        }
+        JSONObject body = json.optJSONObject("article_body");
+        if (body == null || !body.has("html")) {
+            return null;
+        }
+        String html = body.getString("html");
+        if (!html.contains("<title")) {
+            html = "<title>" + StringEscapeUtils.escapeHtml4(json.optString("name", "")) + "</title>" + html;
+        }
+        return html;
+    }
+
+    @Override
+    public int getSkippedRecords() {
+        return skipped_records.get();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The permits a line takes from the queue budget. A single line which is larger than the whole budget takes all
+     * the permits, such that it is still passed, but alone.
+     *
+     * @param line
+     * @return
+     */
+    private int getPermits(String line) {
+        return (int) Math.max(1, Math.min(max_permits, line.length() / 1024));
+    }
+
+    /**
+     * List the dump files, in case of a directory all the ndjson and tar files in it.
+     *
+     * @param path
+     * @return
+     */
+    public static List<File> listDumpFiles(File path) {
+        List<File> files = new ArrayList<>();
+        if (!path.isDirectory()) {
+            if (path.exists()) {
+                files.add(path);
+            }
+            return files;
+        }
+
+        File[] dir_files = path.listFiles();
+        if (dir_files == null) {
+            return files;
+        }
+        Arrays.sort(dir_files);
+        for (File file : dir_files) {
+            String name = file.getName();
+            if (name.endsWith(".ndjson") || name.endsWith(".ndjson.gz") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Decompress a dump file and pass all its articles into the queue.
+     *
+     * @param file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void readDumpFile(File file) throws IOException, InterruptedException {
+        String name = file.getName();
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 20);
+        if (name.endsWith(".gz") || name.endsWith(".tgz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+
+        try {
+            if (name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                TarInputStream tar = new TarInputStream(in);
+                TarEntry entry;
+                while ((entry = tar.getNextEntry()) != null) {
+                    if (!entry.isDirectory() && entry.getName().endsWith(".ndjson")) {
+                        //the tar stream ends at the end of each entry, so the reader does not read past it.
+                        readArticles(new BufferedReader(new InputStreamReader(tar, StandardCharsets.UTF_8)));
+                    }
+                }
+            } else {
+                readArticles(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Pass the ndjson lines of the articles into the queue, once there is enough space in the queue budget.
+     *
+     * @param reader
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void readArticles(BufferedReader reader) throws IOException, InterruptedException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            queued_bytes.acquire(getPermits(line));
+            articles.put(line);
+        }
+    }
+
+    private void putArticle(String article) {
+        try {
+            articles.put(article);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package extractor;
 
-import datastruct.table.WikiColumnHeader;
 import datastruct.table.WikiTable;
-import datastruct.table.WikiTableCell;
 import io.FileUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.jsoup.Jsoup;
@@ -11,20 +9,22 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import utils.WebUtils;
 
-import java.io.BufferedReader;
-import java.io.IOException;
+import java.io.*;
 import java.net.URLEncoder;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Created by besnik on 7/13/18.
  */
 public class HTMLTableExtractor {
     public static void main(String[] args) throws IOException {
-        String option = "", seed_path = "", out = "", in_file = "";
+        String option = "", seed_path = "", out = "", in_file = "", pairs_file = "", schema = "";
+        int top_k = SchemaCatalog.DEFAULT_TOP_K;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-option")) {
@@ -35,6 +35,12 @@ public class HTMLTableExtractor {
                 out = args[++i];
             } else if (args[i].equals("-in")) {
                 in_file = args[++i];
+            } else if (args[i].equals("-pairs")) {
+                pairs_file = args[++i];
+            } else if (args[i].equals("-schema")) {
+                schema = args[++i];
+            } else if (args[i].equals("-top_k")) {
+                top_k = Integer.parseInt(args[++i]);
             }
         }
         if (option.equals("crawl_table_articles")) {
@@ -42,8 +48,15 @@ public class HTMLTableExtractor {
 
             extractHTMLWikiPageContent(tables, out);
         } else if (option.equals("parse_tables")) {
-            String out_dir = args[3];
-            parseHTMLTables(in_file, out_dir);
+            parseHTMLTables(in_file, out, ParseOptions.fromArgs(args));
+        } else if (option.equals("export_db")) {
+            exportTablesToDB(in_file, out, ParseOptions.fromArgs(args));
+        } else if (option.equals("join_pairs")) {
+            TablePairJoiner.joinPairs(pairs_file, in_file, out);
+        } else if (option.equals("build_schema_catalog")) {
+            SchemaCatalog.buildCatalog(in_file, out, ParseOptions.fromArgs(args).threads, top_k);
+        } else if (option.equals("schema_lookup")) {
+            SchemaCatalog.lookupSchema(in_file, schema);
         }
     }
 
@@ -83,60 +96,323 @@ public class HTMLTableExtractor {
      * @throws IOException
      */
     public static void parseHTMLTables(String file, String outfile) throws IOException {
-        BufferedReader reader = FileUtils.getFileReader(file);
-        String line;
-
-        List<String> table_data_lines = new ArrayList<>();
-        Queue<String> table_output_lines = new ConcurrentLinkedQueue<>();
+        parseHTMLTables(file, outfile, new ParseOptions());
+    }
 
+    /**
+     * Extract the tables from the HTML content of the articles. The articles are grouped into batches of a fixed
+     * amount of bytes, whereas articles above the size threshold are parsed in a separate lane with lower concurrency.
+     * The amount of article content which is parsed and not yet written is bounded by the in-flight budget, and the
+     * dispatching of new batches backs off when the heap usage goes above the configured ratio.
+     *
+     * @param file
+     * @param outfile
+     * @param options
+     * @throws IOException
+     */
+    public static void parseHTMLTables(String file, String outfile, ParseOptions options) throws IOException {
         AtomicInteger atm = new AtomicInteger(5000000);
         AtomicInteger err_atm = new AtomicInteger();
-        while ((line = reader.readLine()) != null) {
-            String entity_text = line.contains("\t") ? line.substring(line.indexOf("\t")) : line;
-
-            //add the lines
-            table_data_lines.add(entity_text);
-
-            if (table_data_lines.size() > 1000) {
-                table_data_lines.parallelStream().forEach(table_html_text -> {
-                    String tbl_out = parseTableHTML(table_html_text, atm, err_atm);
-                    table_output_lines.add(tbl_out);
-                });
-
-                //output the data
-                StringBuffer sb = new StringBuffer();
-                for (String tbl_html_out : table_output_lines) {
-                    sb.append(tbl_html_out);
+
+        int large_articles;
+        boolean completed = false;
+        TableOutputSink sink = TableOutputSink.open(outfile, options);
+        try (ArticleSource source = ArticleSource.open(file, options)) {
+            large_articles = parseInBatches(source, options, batch -> {
+                //the parsed output is flushed into the sink in chunks, such that it is never held entirely in memory.
+                StringBuilder sb = new StringBuilder();
+                //the number of tables in the buffer and the range of their ids.
+                int[] stats = {0, Integer.MAX_VALUE, Integer.MIN_VALUE};
+                Consumer<WikiTable> table_stats = tbl -> {
+                    stats[0]++;
+                    stats[1] = Math.min(stats[1], tbl.table_id);
+                    stats[2] = Math.max(stats[2], tbl.table_id);
+                };
+                for (String table_html_text : batch) {
+                    sb.append(parseTableHTML(table_html_text, atm, err_atm, options, table_stats));
                     if (sb.length() > 100000) {
-                        FileUtils.saveText(sb.toString(), outfile, true);
-                        sb.delete(0, sb.length());
+                        writeOutput(sink, sb, stats);
                     }
                 }
+                writeOutput(sink, sb, stats);
+            });
+            completed = true;
+        } finally {
+            //a failed run must not leave output which looks complete.
+            if (!completed) {
+                sink.abort();
+            }
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            sink.abort();
+            throw e;
+        }
 
-                FileUtils.saveText(sb.toString(), outfile, true);
-                //once done, flush out all the data
-                table_data_lines.clear();
-                table_output_lines.clear();
+        System.out.printf("Finished processing %d tables (%d large articles), and there %d were erroneous.\n", atm.get(), large_articles, err_atm.get());
+        printStatistics(options);
+    }
+
+    /**
+     * Parses a batch of articles within a parsing task.
+     */
+    private interface BatchParser {
+        void parse(List<String> batch) throws IOException;
+    }
+
+    /**
+     * Read the articles from the source and parse them in batches of a fixed amount of bytes, whereas articles above
+     * the size threshold are parsed in a separate lane with lower concurrency. In case a batch fails, e.g. when
+     * writing its output, we stop reading and rethrow the error, such that the run fails and no batch is lost silently.
+     *
+     * @param source
+     * @param options
+     * @param parser
+     * @return the number of large articles.
+     * @throws IOException
+     */
+    private static int parseInBatches(ArticleSource source, ParseOptions options, BatchParser parser) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+        ExecutorService large_pool = Executors.newFixedThreadPool(options.large_article_threads);
+        Semaphore inflight = new Semaphore(options.getInflightPermits());
+        AtomicReference<Exception> task_error = new AtomicReference<>();
+        int large_articles = 0;
+
+        String entity_text;
+        List<String> batch = new ArrayList<>();
+        long batch_bytes = 0;
+        try {
+            while ((entity_text = source.nextArticle()) != null && task_error.get() == null) {
+                long article_bytes = entity_text.length();
+
+                //large articles are parsed on their own, so that they do not hold back an entire batch.
+                if (article_bytes >= options.large_article_bytes) {
+                    large_articles++;
+                    submitBatch(large_pool, new ArrayList<>(Collections.singletonList(entity_text)), article_bytes, source, inflight, options, parser, task_error);
+                    continue;
+                }
+
+                batch.add(entity_text);
+                batch_bytes += article_bytes;
+
+                if (batch_bytes >= options.batch_bytes) {
+                    submitBatch(pool, batch, batch_bytes, source, inflight, options, parser, task_error);
+                    batch = new ArrayList<>();
+                    batch_bytes = 0;
+                }
             }
+            //parse the remainder
+            if (!batch.isEmpty() && task_error.get() == null) {
+                submitBatch(pool, batch, batch_bytes, source, inflight, options, parser, task_error);
+            }
+
+            pool.shutdown();
+            large_pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            large_pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing the tables.", e);
+        } finally {
+            pool.shutdownNow();
+            large_pool.shutdownNow();
+        }
+
+        if (source.getSkippedRecords() != 0) {
+            System.out.printf("Skipped %d malformed article records.\n", source.getSkippedRecords());
+        }
+        Exception error = task_error.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            throw new IOException("Parsing the articles failed.", error);
         }
-        //parse the remainder
-        table_data_lines.parallelStream().forEach(table_html_text -> {
-            String tbl_out = parseTableHTML(table_html_text, atm, err_atm);
-            table_output_lines.add(tbl_out);
+        return large_articles;
+    }
+
+    /**
+     * Submit a batch of articles for parsing into the given pool. Before submitting, we wait until the heap usage is
+     * below the configured ratio and until there is enough space in the in-flight budget. The HTML content is
+     * extracted from the raw records of the source within the task.
+     *
+     * @param pool
+     * @param batch
+     * @param batch_bytes
+     * @param source
+     * @param inflight
+     * @param options
+     * @param parser
+     * @param task_error
+     * @throws InterruptedException
+     */
+    private static void submitBatch(ExecutorService pool, List<String> batch, long batch_bytes, ArticleSource source, Semaphore inflight,
+                                    ParseOptions options, BatchParser parser,
+                                    AtomicReference<Exception> task_error) throws InterruptedException {
+        //back off while the heap is under pressure, as long as there are batches which will free up memory once done.
+        long backoff_ms = 10;
+        while (ParseOptions.getHeapUsageRatio() > options.heap_pressure_ratio && inflight.availablePermits() < options.getInflightPermits()) {
+            Thread.sleep(backoff_ms);
+            backoff_ms = Math.min(backoff_ms * 2, 1000);
+        }
+
+        int permits = options.getPermits(batch_bytes);
+        inflight.acquire(permits);
+        pool.submit(() -> {
+            try {
+                //replace the records with their HTML content, and drop the records without it.
+                for (ListIterator<String> it = batch.listIterator(); it.hasNext(); ) {
+                    String html = source.toHTML(it.next());
+                    if (html == null) {
+                        it.remove();
+                    } else {
+                        it.set(html);
+                    }
+                }
+                parser.parse(batch);
+            } catch (Exception e) {
+                task_error.compareAndSet(null, e);
+            } finally {
+                inflight.release(permits);
+            }
         });
+    }
 
-        StringBuffer sb = new StringBuffer();
-        for (String tbl_html_out : table_output_lines) {
-            sb.append(tbl_html_out);
+    /**
+     * Write the parsed output into the shared sink and clear the buffer along with its table statistics.
+     *
+     * @param sink
+     * @param sb
+     * @param stats the number of tables in the buffer, and their min and max table id.
+     * @throws IOException
+     */
+    private static void writeOutput(TableOutputSink sink, StringBuilder sb, int[] stats) throws IOException {
+        if (sb.length() == 0) {
+            return;
+        }
+        sink.write(sb.toString(), stats[0], stats[1], stats[2]);
+        sb.setLength(0);
+        stats[0] = 0;
+        stats[1] = Integer.MAX_VALUE;
+        stats[2] = Integer.MIN_VALUE;
+    }
+
+
+    /**
+     * Extract the tables from the HTML content of the articles and export them into an embedded H2 database. The
+     * articles are parsed in parallel batches as in parseHTMLTables, whereas a single writer thread drains the parsed
+     * tables from a bounded queue into the database, such that the export does not hold back the parsing. In case the
+     * reading or the parsing fails, the writer is stopped and the database is closed without building the indexes.
+     *
+     * @param file
+     * @param db_path
+     * @param options
+     * @throws IOException
+     */
+    public static void exportTablesToDB(String file, String db_path, ParseOptions options) throws IOException {
+        BlockingQueue<WikiTable> table_queue = new ArrayBlockingQueue<>(10000);
+        AtomicReference<Exception> writer_error = new AtomicReference<>();
+        //mark the end of the parsed tables for the writer thread, either after all the articles or after a failure.
+        WikiTable eof = new WikiTable();
+        WikiTable abort = new WikiTable();
+
+        //the database is opened before the parsing, such that a database which cannot be created fails the run right away.
+        TableDBExporter db_exporter;
+        try {
+            db_exporter = new TableDBExporter(db_path, 10000, 5000);
+        } catch (SQLException e) {
+            throw new IOException("Could not create the database " + db_path, e);
+        }
+
+        Thread writer = new Thread(() -> {
+            try (TableDBExporter exporter = db_exporter) {
+                try {
+                    WikiTable tbl;
+                    while ((tbl = table_queue.take()) != eof) {
+                        if (tbl == abort) {
+                            exporter.abort();
+                            return;
+                        }
+                        exporter.addTable(tbl);
+                    }
+                } catch (Exception e) {
+                    exporter.abort();
+                    throw e;
+                }
+                System.out.printf("Finished exporting %d tables into %s.\n", exporter.getNumTables(), db_path);
+            } catch (Exception e) {
+                writer_error.set(e);
+                e.printStackTrace();
+            }
+        });
+        writer.start();
 
-            if (sb.length() > 100000) {
-                FileUtils.saveText(sb.toString(), outfile, true);
-                sb.delete(0, sb.length());
+        Consumer<WikiTable> table_consumer = tbl -> {
+            try {
+                //in case the writer fails we stop blocking on the full queue.
+                while (writer_error.get() == null && !table_queue.offer(tbl, 1, TimeUnit.SECONDS)) ;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        };
+
+        AtomicInteger atm = new AtomicInteger(5000000);
+        AtomicInteger err_atm = new AtomicInteger();
+        boolean completed = false;
+        try (ArticleSource source = ArticleSource.open(file, options)) {
+            parseInBatches(source, options, batch -> {
+                for (String table_html_text : batch) {
+                    if (writer_error.get() != null) {
+                        throw new IOException("Exporting the tables into " + db_path + " failed.", writer_error.get());
+                    }
+                    //the tables are not printed into JSON, as they are only exported into the database.
+                    parseTableHTML(table_html_text, atm, err_atm, options, table_consumer, false);
+                }
+            });
+            completed = true;
+        } finally {
+            stopWriter(writer, table_queue, completed ? eof : abort, writer_error);
+        }
+
+        if (writer_error.get() != null) {
+            throw new IOException("Exporting the tables into " + db_path + " failed.", writer_error.get());
         }
         System.out.printf("Finished processing %d tables, and there %d were erroneous.\n", atm.get(), err_atm.get());
+        printStatistics(options);
+    }
+
+    /**
+     * Pass the end marker to the writer thread and wait until it finishes. In case we are interrupted, the writer is
+     * interrupted as well, such that it does not block on the queue.
+     *
+     * @param writer
+     * @param table_queue
+     * @param marker
+     * @param writer_error
+     */
+    private static void stopWriter(Thread writer, BlockingQueue<WikiTable> table_queue, WikiTable marker, AtomicReference<Exception> writer_error) {
+        try {
+            while (writer_error.get() == null && !table_queue.offer(marker, 1, TimeUnit.SECONDS)) ;
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
     }
 
+    /**
+     * Print the statistics of the table filter and the deduplication, if set.
+     *
+     * @param options
+     */
+    private static void printStatistics(ParseOptions options) {
+        if (options.filter != null) {
+            System.out.println(options.filter.getStatistics());
+        }
+        if (options.deduplicator != null) {
+            System.out.println(options.deduplicator.getStatistics());
+        }
+    }
 
     /**
      * Parse a single article.
@@ -147,11 +423,49 @@ public class HTMLTableExtractor {
      * @return
      */
     public static String parseTableHTML(String entity_text, AtomicInteger atm, AtomicInteger atm_err) {
+        return parseTableHTML(entity_text, atm, atm_err, null, null);
+    }
+
+    /**
+     * Parse a single article, and additionally pass every parsed table to the given consumer. In case a table filter
+     * is set in the options, the entity, the sections and the tables are pruned as early as the filter allows. For
+     * pruned entities, and for entities whose tables were all pruned, we return an empty string.
+     *
+     * @param entity_text
+     * @param atm
+     * @param atm_err
+     * @param options        the parsing options, can be null.
+     * @param table_consumer receives the parsed tables, can be null.
+     * @return
+     */
+    public static String parseTableHTML(String entity_text, AtomicInteger atm, AtomicInteger atm_err, ParseOptions options, Consumer<WikiTable> table_consumer) {
+        return parseTableHTML(entity_text, atm, atm_err, options, table_consumer, true);
+    }
+
+    /**
+     * Parse a single article as above, where the printing of the tables into JSON can be skipped in case the tables
+     * are only needed by the consumer. In that case the markup of the tables is not kept either, and we return an
+     * empty string.
+     *
+     * @param entity_text
+     * @param atm
+     * @param atm_err
+     * @param options
+     * @param table_consumer
+     * @param print_json     whether to print the tables into the returned JSON.
+     * @return
+     */
+    public static String parseTableHTML(String entity_text, AtomicInteger atm, AtomicInteger atm_err, ParseOptions options, Consumer<WikiTable> table_consumer, boolean print_json) {
         StringBuffer sb = new StringBuffer();
         Document doc = Jsoup.parse(entity_text);
+        TableFilter filter = options == null ? null : options.filter;
+        TableDeduplicator deduplicator = options == null ? null : options.deduplicator;
 
-        Elements sections = doc.select("section");
         String title = doc.title().replaceAll(" ", "_");
+        if (filter != null && !filter.acceptEntity(title)) {
+            return "";
+        }
+        Elements sections = doc.select("section");
         System.out.printf("Processing entity %s\n", title);
 
         sb.append("{\"entity\":\"").append(StringEscapeUtils.escapeJson(title)).append("\", \"sections\":[");
@@ -160,18 +474,17 @@ public class HTMLTableExtractor {
         for (Element section : sections) {
             String section_id = section.attr("data-mw-section-id");
             String section_name = getSectionName(section, section_id);
-            Elements tables = section.getElementsByClass("wikitable");
-
-            if (section_name.isEmpty() || tables == null || tables.isEmpty()) {
+            if (section_name.isEmpty()) {
                 continue;
             }
+            Elements tables = section.getElementsByClass("wikitable");
 
-            if (section_idx != 0) {
-                sb.append(", ");
+            if (tables == null || tables.isEmpty() || (filter != null && !filter.acceptSection(section_name))) {
+                continue;
             }
 
-
-            sb.append("{\"section\":\"").append(StringEscapeUtils.escapeJson(section_name)).append("\", \"tables\":[");
+            StringBuilder section_sb = new StringBuilder();
+            section_sb.append("{\"section\":\"").append(StringEscapeUtils.escapeJson(section_name)).append("\", \"tables\":[");
 
             int tbl_idx = 0;
             for (Element table : tables) {
@@ -180,23 +493,33 @@ public class HTMLTableExtractor {
                 }
                 //since some tables may contain sub-tables, we first split those and then process them further.
                 try {
-                    Map<Integer, List<Element>> table_rows = getSubTables(table);
-                    for (int sub_tbl_id : table_rows.keySet()) {
+                    for (WikiTable tbl : TableGridBuilder.buildTables(table, filter)) {
                         int table_id = atm.incrementAndGet();
-                        WikiTable tbl = parseTable(table_rows.get(sub_tbl_id));
                         tbl.section = section_name;
-                        tbl.markup = table.toString();
+                        tbl.markup = print_json ? table.toString() : null;
                         tbl.table_caption = table.select("caption").text();
                         tbl.table_id = table_id;
+                        tbl.entity = title;
                         table_id++;
 
-                        String table_json_output = TablePrinter.printTableToJSON(tbl);
+                        if (deduplicator != null) {
+                            tbl.canonical_table_id = deduplicator.findOrAdd(tbl);
+                            if (tbl.canonical_table_id != -1 && deduplicator.drop) {
+                                continue;
+                            }
+                        }
+                        ColumnTypeInference.inferColumnTypes(tbl);
+
+                        String table_json_output = print_json ? TablePrinter.printTableToJSON(tbl) : "";
+                        if (table_consumer != null) {
+                            table_consumer.accept(tbl);
+                        }
 
                         if (tbl_idx != 0) {
-                            sb.append(", ");
+                            section_sb.append(", ");
                         }
 
-                        sb.append(table_json_output);
+                        section_sb.append(table_json_output);
                         tbl_idx++;
 
                     }
@@ -205,48 +528,25 @@ public class HTMLTableExtractor {
                     atm_err.incrementAndGet();
                 }
             }
-            sb.append("]}");
-            section_idx++;
-        }
-        sb.append("]}\n");
-        return sb.toString();
-    }
-
-    /**
-     * Parse the HTML representation of the table into the WikiTable object.
-     *
-     * @param table_rows
-     * @return
-     */
-
-    public static WikiTable parseTable(List<Element> table_rows) {
-        List<Element> rows_data = table_rows.stream().filter(tr -> !tr.select("td").isEmpty()).collect(Collectors.toList());
-
-        WikiTable tbl = new WikiTable();
-        tbl.setColumnHeaders(table_rows);
-
-        int num_rows = rows_data.size();
-        tbl.initializeCells(num_rows);
-
-        for (int i = 0; i < rows_data.size(); i++) {
-            Elements cell_values = rows_data.get(i).getAllElements();
-            int k = 0;
+            section_sb.append("]}");
+            //with a filter, the sections whose tables were all pruned are skipped.
+            if (filter != null && tbl_idx == 0) {
+                continue;
+            }
 
-            for (int j = 1; j < cell_values.size(); j++) {
-                Element cell_value = cell_values.get(j);
-                if (cell_value.select("td").isEmpty() && cell_value.select("th").isEmpty()) {
-                    continue;
-                }
-                WikiColumnHeader col = tbl.columns[tbl.columns.length - 1][k];
-                WikiTableCell cell = new WikiTableCell(cell_value, col);
-                k = tbl.addCellValue(cell, i, k);
+            if (section_idx != 0) {
+                sb.append(", ");
             }
+            sb.append(section_sb);
+            section_idx++;
         }
-
-        return tbl;
+        if (filter != null && section_idx == 0) {
+            return "";
+        }
+        sb.append("]}\n");
+        return print_json ? sb.toString() : "";
     }
 
-
     /**
      * Extract the section title. Depending on the level of the section, we need to look for either <h2></h2>, <h3></h3> etc.
      *
@@ -272,55 +572,4 @@ public class HTMLTableExtractor {
         return section_name;
     }
 
-    /**
-     * Some tables contain labels which are columns spanning across all columns and they appear after data rows. In this
-     * case we can split the table into multiple parts.
-     *
-     * @param table
-     * @return
-     */
-    public static Map<Integer, List<Element>> getSubTables(Element table) {
-        Map<Integer, List<Element>> table_data = new HashMap<>();
-        Elements rows = table.select("tr");
-
-        int table_idx = 0;
-        boolean data_region = false;
-        for (int i = 0; i < rows.size(); i++) {
-            Element row = rows.get(i);
-            if (!table_data.containsKey(table_idx)) {
-                table_data.put(table_idx, new ArrayList<>());
-            }
-
-            boolean is_header = !row.select("th").isEmpty();
-            boolean is_data = !row.select("td").isEmpty();
-
-            if (!is_header && !is_data) {
-                continue;
-            }
-
-            if (!is_header || is_data) {
-                if (!data_region && is_data) {
-                    data_region = true;
-                }
-            } else if (is_header) {
-                if (data_region) {
-                    table_idx++;
-                    data_region = false;
-
-                    //add the new sub-table
-                    if (!table_data.containsKey(table_idx)) {
-                        table_data.put(table_idx, new ArrayList<>());
-                    }
-
-                    //from the first entry get the column headers.
-                    List<Element> top_rows = table_data.get(0).size() > 1 ? table_data.get(0).stream().filter(th -> !th.select("th").isEmpty()).collect(Collectors.toList()) : table_data.get(0);
-                    int length = top_rows.size() - 1;
-                    table_data.get(table_idx).addAll(top_rows.subList(0, length));
-                }
-            }
-            table_data.get(table_idx).add(row);
-        }
-        return table_data;
-    }
-
 }
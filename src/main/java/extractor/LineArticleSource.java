@@ -0,0 +1,32 @@
+package extractor;
+
+import io.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Reads the articles as extracted by crawl_table_articles, where every line consists of the article name and its
+ * HTML content separated by a tab.
+ */
+public class LineArticleSource implements ArticleSource {
+    private BufferedReader reader;
+
+    public LineArticleSource(String file) throws IOException {
+        reader = FileUtils.getFileReader(file);
+    }
+
+    @Override
+    public String nextArticle() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        return line.contains("\t") ? line.substring(line.indexOf("\t")) : line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
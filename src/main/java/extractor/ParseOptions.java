@@ -0,0 +1,123 @@
+package extractor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Holds the settings for parsing the tables from the articles. The settings govern how many articles we parse at once
+ * in parse_tables, where all the limits are measured in bytes of the article content (approximated through the length
+ * of the article text), such that the heap usage depends on the configured limits and not on the content of the
+ * batches. Additionally, an optional filter determines which of the tables we extract, and the output format whether
+ * the tables are written into a single file or into compressed shards.
+ */
+public class ParseOptions {
+    private static final long MB = 1024L * 1024L;
+
+    //the amount of article content which is grouped into a single parsing task.
+    public long batch_bytes = 16 * MB;
+    //the amount of article content that can be parsed and not yet written at any point in time.
+    public long max_inflight_bytes = 512 * MB;
+    //articles larger than this are parsed in a separate lane with lower concurrency.
+    public long large_article_bytes = 2 * MB;
+
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public int large_article_threads = 2;
+
+    //once the used heap goes above this ratio of the max heap, we stop dispatching new tasks until it drops.
+    public double heap_pressure_ratio = 0.85;
+
+    //the format of the input, either "lines" as produced by crawl_table_articles, or "html_dump" for the Wikimedia
+    //Enterprise HTML dumps, which are read with the given number of threads.
+    public String input_format = "lines";
+    public int dump_threads = 4;
+
+    //the format of the output, either "file" for a single uncompressed file, or "sharded" for a directory of gzip
+    //shards, where a new shard is started after the given amount of uncompressed output.
+    public String output_format = "file";
+    public long shard_bytes = 256 * MB;
+    public int compress_threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    //the filter on the extracted tables, null if all tables are extracted.
+    public TableFilter filter;
+    //the near-duplicate detection, null if all tables are kept as they are.
+    public TableDeduplicator deduplicator;
+
+    /**
+     * Parse the settings from the command line arguments. The sizes are given in MB, and the filter as an expression
+     * as described in TableFilter. Near-duplicate tables are either dropped or tagged depending on "-dedup drop|tag".
+     *
+     * @param args
+     * @return
+     */
+    public static ParseOptions fromArgs(String[] args) {
+        ParseOptions options = new ParseOptions();
+        String dedup_mode = null;
+        double dedup_similarity = 0.95;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-batch_mb")) {
+                options.batch_bytes = Long.parseLong(args[++i]) * MB;
+            } else if (args[i].equals("-inflight_mb")) {
+                options.max_inflight_bytes = Long.parseLong(args[++i]) * MB;
+            } else if (args[i].equals("-large_article_mb")) {
+                options.large_article_bytes = Long.parseLong(args[++i]) * MB;
+            } else if (args[i].equals("-threads")) {
+                options.threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-large_threads")) {
+                options.large_article_threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-heap_ratio")) {
+                options.heap_pressure_ratio = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-filter")) {
+                options.filter = TableFilter.parse(args[++i]);
+            } else if (args[i].equals("-input_format")) {
+                options.input_format = args[++i];
+            } else if (args[i].equals("-dump_threads")) {
+                options.dump_threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-output_format")) {
+                options.output_format = args[++i];
+            } else if (args[i].equals("-shard_mb")) {
+                options.shard_bytes = Long.parseLong(args[++i]) * MB;
+            } else if (args[i].equals("-compress_threads")) {
+                options.compress_threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-dedup")) {
+                dedup_mode = args[++i];
+            } else if (args[i].equals("-dedup_similarity")) {
+                dedup_similarity = Double.parseDouble(args[++i]);
+            }
+        }
+        if (dedup_mode != null) {
+            options.deduplicator = new TableDeduplicator(dedup_similarity, dedup_mode.equals("drop"));
+        }
+        return options;
+    }
+
+    /**
+     * The in-flight budget is tracked through a semaphore whose permits correspond to KB of article content.
+     *
+     * @return
+     */
+    public int getInflightPermits() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, max_inflight_bytes / 1024));
+    }
+
+    /**
+     * The number of permits a task of the given size needs. A single task which is larger than the whole in-flight
+     * budget takes all the permits, such that it is still processed, but alone.
+     *
+     * @param bytes
+     * @return
+     */
+    public int getPermits(long bytes) {
+        return (int) Math.max(1, Math.min(getInflightPermits(), bytes / 1024));
+    }
+
+    /**
+     * The ratio of the used heap to the max heap.
+     *
+     * @return
+     */
+    public static double getHeapUsageRatio() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return (double) heap.getUsed() / max;
+    }
+}
@@ -0,0 +1,470 @@
+package extractor;
+
+import datastruct.table.WikiColumnHeader;
+import datastruct.table.WikiTable;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Groups all the tables of a table dump by their schema, such that questions like "which tables share this schema,
+ * and how many are there" are answered through a single lookup in the catalog instead of a pass over the dump.
+ * <p>
+ * The schema of a table is given by its header signature, which consists of the normalized column names of every
+ * header level in their order, hence, tables with the same column names but a different order or a different depth
+ * of the header are in different groups. A column spanning multiple slots of a level is part of the signature once. The dump is parsed in parallel batches, and the tables are aggregated into
+ * a concurrent map of schema groups with their counts, table ids, entities, sections and merged value distributions.
+ */
+public class SchemaCatalog {
+    public static final int DEFAULT_TOP_K = 20;
+    //the separators of the column names and of the header levels in the signature.
+    public static final String COLUMN_SEPARATOR = " | ";
+    public static final String LEVEL_SEPARATOR = " || ";
+
+    //the index of the catalog is stored next to it, with the signature hash, the offset and the length of every line.
+    public static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_ENTRY_BYTES = 24;
+
+    //the number of lines of the dump parsed as a single task.
+    private static final int BATCH_LINES = 1000;
+
+    //the number of most frequent values per column which are kept in the catalog.
+    public int top_k;
+    public ConcurrentHashMap<String, SchemaGroup> groups = new ConcurrentHashMap<>();
+    public AtomicLong num_tables = new AtomicLong();
+
+    /**
+     * A group of tables which share the same header signature.
+     */
+    public static class SchemaGroup {
+        public String signature;
+        public int depth;
+        //the column names of the lowest header level, as in the tables.
+        public String[] columns;
+
+        public long num_tables = 0;
+        public List<Integer> table_ids = new ArrayList<>();
+        public Set<String> entities = new TreeSet<>();
+        public Map<String, Integer> sections = new TreeMap<>();
+        //the merged value distributions of the columns in the lowest header level.
+        public Map<Object, Integer>[] value_dist;
+
+        @SuppressWarnings("unchecked")
+        public SchemaGroup(String signature, WikiTable tbl) {
+            this.signature = signature;
+            this.depth = tbl.columns.length;
+
+            WikiColumnHeader[] header = tbl.columns[tbl.columns.length - 1];
+            columns = new String[header.length];
+            value_dist = new Map[header.length];
+            for (int i = 0; i < header.length; i++) {
+                columns[i] = header[i] == null ? "" : header[i].column_name;
+                value_dist[i] = new HashMap<>();
+            }
+        }
+
+        /**
+         * Add the table into the group. The value distributions are merged with their exact counts, and are capped to
+         * the top_k values only when the catalog is written, such that the top values do not depend on the order in
+         * which the tables are added.
+         *
+         * @param tbl
+         */
+        public synchronized void addTable(WikiTable tbl) {
+            num_tables++;
+            table_ids.add(tbl.table_id);
+            if (tbl.entity != null) {
+                entities.add(tbl.entity);
+            }
+            if (tbl.section != null) {
+                sections.merge(tbl.section, 1, Integer::sum);
+            }
+
+            WikiColumnHeader[] header = tbl.columns[tbl.columns.length - 1];
+            for (int i = 0; i < header.length && i < value_dist.length; i++) {
+                if (header[i] == null || header[i].value_dist == null) {
+                    continue;
+                }
+                for (Map.Entry<Object, Integer> value : header[i].value_dist.entrySet()) {
+                    value_dist[i].merge(value.getKey(), value.getValue(), Integer::sum);
+                }
+            }
+        }
+    }
+
+    public SchemaCatalog(int top_k) {
+        this.top_k = top_k;
+    }
+
+    /**
+     * Compute the header signature of the table from the normalized column names of all the header levels.
+     *
+     * @param tbl
+     * @return
+     */
+    public static String getSignature(WikiTable tbl) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tbl.columns.length; i++) {
+            if (i != 0) {
+                sb.append(LEVEL_SEPARATOR);
+            }
+            String[] names = new String[tbl.columns[i].length];
+            for (int j = 0; j < names.length; j++) {
+                WikiColumnHeader col = tbl.columns[i][j];
+                names[j] = col == null ? "" : col.column_name;
+            }
+            appendLevel(sb, names);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Normalize a signature given as a query, e.g. "Year|Team|Points", such that it matches the signatures in the
+     * catalog. The header levels are separated through "||", and a column spanning multiple columns of the level
+     * below is given once, e.g. "Name|Score||Name|Home|Away".
+     *
+     * @param query
+     * @return
+     */
+    public static String normalizeSignature(String query) {
+        StringBuilder sb = new StringBuilder();
+        String[] levels = query.split("\\|\\|", -1);
+        for (int i = 0; i < levels.length; i++) {
+            if (i != 0) {
+                sb.append(LEVEL_SEPARATOR);
+            }
+            appendLevel(sb, levels[i].split("\\|", -1));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Append the normalized column names of a header level to the signature. The header repeats a spanning column in
+     * every slot it covers, hence, adjacent columns with the same name are appended once, in the signatures of the
+     * tables as well as in the queries.
+     *
+     * @param sb
+     * @param names
+     */
+    private static void appendLevel(StringBuilder sb, String[] names) {
+        String last = null;
+        for (String name : names) {
+            String normalized = TableDeduplicator.normalize(name);
+            if (last != null && normalized.equals(last)) {
+                continue;
+            }
+            if (last != null) {
+                sb.append(COLUMN_SEPARATOR);
+            }
+            sb.append(normalized);
+            last = normalized;
+        }
+    }
+
+    /**
+     * Add the table into its schema group. Tables without a header are skipped.
+     *
+     * @param tbl
+     */
+    public void addTable(WikiTable tbl) {
+        if (tbl.columns == null || tbl.columns.length == 0) {
+            return;
+        }
+        String signature = getSignature(tbl);
+        groups.computeIfAbsent(signature, k -> new SchemaGroup(k, tbl)).addTable(tbl);
+        num_tables.incrementAndGet();
+    }
+
+    /**
+     * Build the schema catalog over the table dump and write it into the output file. The dump is either a file as
+     * produced by parse_tables, or a directory of gzip shards from the sharded output.
+     *
+     * @param dump
+     * @param out_file
+     * @param threads
+     * @param top_k
+     * @throws IOException
+     */
+    public static void buildCatalog(String dump, String out_file, int threads, int top_k) throws IOException {
+        List<File> files = ShardedOutputSink.listTableFiles(dump);
+
+        SchemaCatalog catalog = new SchemaCatalog(top_k);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        //bounds the number of batches which are read and not yet processed.
+        Semaphore pending = new Semaphore(threads * 2);
+        AtomicReference<Exception> error = new AtomicReference<>();
+
+        try {
+            for (File file : files) {
+                BufferedReader reader = ShardedOutputSink.getTableReader(file);
+                List<String> batch = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null && error.get() == null) {
+                    batch.add(line);
+                    if (batch.size() >= BATCH_LINES) {
+                        submitBatch(pool, batch, catalog, pending, error);
+                        batch = new ArrayList<>();
+                    }
+                }
+                reader.close();
+                if (!batch.isEmpty()) {
+                    submitBatch(pool, batch, catalog, pending, error);
+                }
+                System.out.printf("Finished reading %s, %d tables in %d schema groups so far.\n", file, catalog.num_tables.get(), catalog.groups.size());
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the schema catalog from " + dump, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (error.get() != null) {
+            throw new IOException("Building the schema catalog from " + dump + " failed.", error.get());
+        }
+
+        catalog.writeCatalog(out_file);
+        System.out.printf("Finished building the schema catalog with %d tables in %d schema groups.\n", catalog.num_tables.get(), catalog.groups.size());
+    }
+
+    private static void submitBatch(ExecutorService pool, List<String> batch, SchemaCatalog catalog, Semaphore pending,
+                                    AtomicReference<Exception> error) throws InterruptedException {
+        pending.acquire();
+        pool.submit(() -> {
+            try {
+                for (String line : batch) {
+                    catalog.addArticle(line);
+                }
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    /**
+     * Add all the tables of an article line from the table dump.
+     *
+     * @param line
+     */
+    public void addArticle(String line) {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        JSONObject article = new JSONObject(line);
+        String entity = article.getString("entity");
+        JSONArray sections = article.getJSONArray("sections");
+        for (int i = 0; i < sections.length(); i++) {
+            JSONObject section = sections.getJSONObject(i);
+            JSONArray tables = section.getJSONArray("tables");
+            for (int j = 0; j < tables.length(); j++) {
+                WikiTable tbl = new WikiTable();
+                tbl.loadFromStructuredJSON(tables.getJSONObject(j), true, false);
+                tbl.entity = entity;
+                tbl.section = section.getString("section");
+                addTable(tbl);
+            }
+        }
+    }
+
+    /**
+     * Write the catalog, one schema group per line, where the groups are sorted by their number of tables. Along with
+     * the catalog we write its index, which holds for every group the hash of its signature and the position of its
+     * line in the catalog, sorted by the hash, such that a lookup reads only the matching line.
+     *
+     * @param out_file
+     * @throws IOException
+     */
+    public void writeCatalog(String out_file) throws IOException {
+        List<SchemaGroup> sorted = new ArrayList<>(groups.values());
+        sorted.sort((a, b) -> a.num_tables != b.num_tables ? Long.compare(b.num_tables, a.num_tables) : a.signature.compareTo(b.signature));
+
+        //the hash of the signature, the offset and the length of the line of every group.
+        long[][] index = new long[sorted.size()][];
+        long offset = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(out_file), 1 << 20)) {
+            for (int i = 0; i < sorted.size(); i++) {
+                SchemaGroup group = sorted.get(i);
+                byte[] line = (printGroupToJSON(group) + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                index[i] = new long[]{TableDeduplicator.hash64(group.signature), offset, line.length};
+                offset += line.length;
+            }
+        }
+
+        Arrays.sort(index, (a, b) -> Long.compare(a[0], b[0]));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out_file + INDEX_SUFFIX), 1 << 20))) {
+            for (long[] entry : index) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeLong(entry[2]);
+            }
+        }
+    }
+
+    /**
+     * Print the schema group as a JSON line, where the value distributions are capped to the top_k values.
+     *
+     * @param group
+     * @return
+     */
+    public String printGroupToJSON(SchemaGroup group) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"signature\":\"").append(StringEscapeUtils.escapeJson(group.signature)).
+                append("\", \"depth\":").append(group.depth).
+                append(", \"tables\":").append(group.num_tables).
+                append(", \"columns\":[");
+        for (int i = 0; i < group.columns.length; i++) {
+            if (i != 0) {
+                sb.append(",");
+            }
+            sb.append("{\"name\":\"").append(StringEscapeUtils.escapeJson(group.columns[i])).append("\", \"value_dist\":[");
+            List<Map.Entry<Object, Integer>> values = new ArrayList<>(getTopValues(group.value_dist[i], top_k).entrySet());
+            values.sort(SchemaCatalog::compareValues);
+            for (int k = 0; k < values.size(); k++) {
+                if (k != 0) {
+                    sb.append(",");
+                }
+                sb.append("{\"value\":\"").append(StringEscapeUtils.escapeJson(values.get(k).getKey().toString())).
+                        append("\",\"count\":").append(values.get(k).getValue()).append("}");
+            }
+            sb.append("]}");
+        }
+
+        List<Integer> table_ids = new ArrayList<>(group.table_ids);
+        Collections.sort(table_ids);
+        sb.append("], \"table_ids\":[");
+        for (int i = 0; i < table_ids.size(); i++) {
+            if (i != 0) {
+                sb.append(",");
+            }
+            sb.append(table_ids.get(i));
+        }
+
+        sb.append("], \"entities\":[");
+        int idx = 0;
+        for (String entity : group.entities) {
+            if (idx++ != 0) {
+                sb.append(",");
+            }
+            sb.append("\"").append(StringEscapeUtils.escapeJson(entity)).append("\"");
+        }
+
+        sb.append("], \"sections\":[");
+        idx = 0;
+        for (Map.Entry<String, Integer> section : group.sections.entrySet()) {
+            if (idx++ != 0) {
+                sb.append(",");
+            }
+            sb.append("{\"section\":\"").append(StringEscapeUtils.escapeJson(section.getKey())).
+                    append("\",\"count\":").append(section.getValue()).append("}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * Look up the schema group of the given signature in the catalog, and print it.
+     *
+     * @param catalog_file
+     * @param query
+     * @throws IOException
+     */
+    public static void lookupSchema(String catalog_file, String query) throws IOException {
+        String signature = normalizeSignature(query);
+        String group = lookupGroup(catalog_file, signature);
+        if (group == null) {
+            System.out.printf("There are no tables with the schema %s.\n", signature);
+            return;
+        }
+        System.out.println(group);
+    }
+
+    /**
+     * Find the line of the schema group with the given signature, through a binary search over the hashes in the
+     * index of the catalog. Since different signatures can have the same hash, the signature of every matching line is
+     * compared as well. We return null in case there is no such group.
+     *
+     * @param catalog_file
+     * @param signature    the normalized signature.
+     * @return
+     * @throws IOException
+     */
+    public static String lookupGroup(String catalog_file, String signature) throws IOException {
+        File index_file = new File(catalog_file + INDEX_SUFFIX);
+        if (!index_file.exists()) {
+            throw new FileNotFoundException("The index of the catalog " + index_file + " is missing, please build the catalog again.");
+        }
+        long hash = TableDeduplicator.hash64(signature);
+        String prefix = "{\"signature\":\"" + StringEscapeUtils.escapeJson(signature) + "\"";
+
+        try (RandomAccessFile index = new RandomAccessFile(index_file, "r");
+             RandomAccessFile catalog = new RandomAccessFile(catalog_file, "r")) {
+            long num_entries = index.length() / INDEX_ENTRY_BYTES;
+
+            //find the first entry with the hash
+            long low = 0, high = num_entries;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                index.seek(mid * INDEX_ENTRY_BYTES);
+                if (index.readLong() < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            for (long i = low; i < num_entries; i++) {
+                index.seek(i * INDEX_ENTRY_BYTES);
+                if (index.readLong() != hash) {
+                    break;
+                }
+                long offset = index.readLong();
+                byte[] line = new byte[(int) index.readLong()];
+                catalog.seek(offset);
+                catalog.readFully(line);
+
+                String group = new String(line, StandardCharsets.UTF_8).trim();
+                if (group.startsWith(prefix)) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<Object, Integer> getTopValues(Map<Object, Integer> values, int k) {
+        if (values.size() <= k) {
+            return values;
+        }
+        List<Map.Entry<Object, Integer>> entries = new ArrayList<>(values.entrySet());
+        entries.sort(SchemaCatalog::compareValues);
+        Map<Object, Integer> top = new HashMap<>();
+        for (int i = 0; i < k; i++) {
+            top.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return top;
+    }
+
+    /**
+     * Sort the values by their count, and the values with equal counts by their value, such that the top values are
+     * the same irrespective of the order in which the tables were added.
+     *
+     * @param o1
+     * @param o2
+     * @return
+     */
+    private static int compareValues(Map.Entry<Object, Integer> o1, Map.Entry<Object, Integer> o2) {
+        int cmp = o2.getValue().compareTo(o1.getValue());
+        return cmp != 0 ? cmp : o1.getKey().toString().compareTo(o2.getKey().toString());
+    }
+}
@@ -0,0 +1,369 @@
+package extractor;
+
+import io.FileUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the extracted tables into size-bounded rolling shards of gzip files. The output is cut into blocks which are
+ * compressed in parallel on a pool, each block into its own gzip member, and the members are written in order into
+ * the shard. Concatenated gzip members form a valid gzip file, hence, the shards can be read with gunzip, zcat or
+ * GZIPInputStream.
+ * <p>
+ * A shard is written into a temporary file, which is synced and atomically renamed once the shard is complete, such
+ * that a crashed run never leaves truncated shards. Once all shards are written, a manifest with the table counts,
+ * the table id ranges and the SHA-256 checksum of every shard is written in the same way. In case the run fails, the
+ * sink is aborted, which deletes all the shards of the run and writes no manifest.
+ */
+public class ShardedOutputSink implements TableOutputSink {
+    public static final int BLOCK_BYTES = 1 << 20;
+    public static final String MANIFEST = "manifest.json";
+
+    //marks the end of the blocks for the writer thread.
+    private static final Object EOF = new Object();
+
+    private File out_dir;
+    private long shard_bytes;
+    private ExecutorService compress_pool;
+    private BlockingQueue<Object> blocks;
+    private Thread writer_thread;
+    private volatile IOException write_error;
+    private boolean aborted = false;
+
+    private ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_BYTES + (BLOCK_BYTES >> 2));
+    private ShardInfo shard;
+    private int num_shards = 0;
+    private List<ShardInfo> manifest = new ArrayList<>();
+
+    /**
+     * The statistics of a shard, which are written into the manifest.
+     */
+    private static class ShardInfo {
+        String name;
+        long tables = 0;
+        long uncompressed_bytes = 0;
+        long compressed_bytes = 0;
+        int min_table_id = Integer.MAX_VALUE;
+        int max_table_id = Integer.MIN_VALUE;
+        String sha256;
+    }
+
+    /**
+     * @param out_dir         the directory of the shards.
+     * @param shard_bytes     the amount of uncompressed output after which we start a new shard.
+     * @param compress_threads the number of threads which compress the blocks.
+     * @throws IOException
+     */
+    public ShardedOutputSink(File out_dir, long shard_bytes, int compress_threads) throws IOException {
+        if (!out_dir.isDirectory() && !out_dir.mkdirs()) {
+            throw new IOException("Could not create the output directory " + out_dir);
+        }
+        //shards of a previous run would be mixed up with the shards of this run by the readers of the directory.
+        String[] existing = out_dir.list((dir, name) -> name.startsWith("tables-") || name.startsWith(MANIFEST));
+        if (existing != null && existing.length != 0) {
+            throw new IOException("The output directory " + out_dir + " already contains shards, please use an empty directory.");
+        }
+        this.out_dir = out_dir;
+        this.shard_bytes = shard_bytes;
+        this.compress_pool = Executors.newFixedThreadPool(compress_threads);
+        //bounds the blocks which are compressed or waiting to be written.
+        this.blocks = new ArrayBlockingQueue<>(compress_threads * 4);
+        this.shard = newShard();
+
+        writer_thread = new Thread(this::writeBlocks);
+        writer_thread.start();
+    }
+
+    @Override
+    public synchronized void write(String chunk, int num_tables, int min_table_id, int max_table_id) throws IOException {
+        if (aborted) {
+            throw new IOException("The output into " + out_dir + " was aborted.");
+        }
+        if (write_error != null) {
+            throw write_error;
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        block.write(bytes);
+
+        shard.uncompressed_bytes += bytes.length;
+        shard.tables += num_tables;
+        if (num_tables != 0) {
+            shard.min_table_id = Math.min(shard.min_table_id, min_table_id);
+            shard.max_table_id = Math.max(shard.max_table_id, max_table_id);
+        }
+
+        if (block.size() >= BLOCK_BYTES) {
+            flushBlock();
+        }
+        if (shard.uncompressed_bytes >= shard_bytes) {
+            flushBlock();
+            enqueue(shard);
+            shard = newShard();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flushBlock();
+            if (shard.uncompressed_bytes != 0) {
+                enqueue(shard);
+            }
+            enqueue(EOF);
+            writer_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the shards into " + out_dir, e);
+        } finally {
+            compress_pool.shutdownNow();
+        }
+        if (write_error != null) {
+            throw write_error;
+        }
+        writeManifest();
+    }
+
+    /**
+     * Stop the writer thread and delete the shards of this run, both the complete and the temporary ones. Since the
+     * output directory contained no shards when the sink was opened, all the shards in it belong to this run.
+     */
+    @Override
+    public synchronized void abort() {
+        if (aborted) {
+            return;
+        }
+        aborted = true;
+        compress_pool.shutdownNow();
+        writer_thread.interrupt();
+        try {
+            writer_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        File[] files = out_dir.listFiles((dir, name) -> name.startsWith("tables-"));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    System.out.printf("Could not delete the shard %s of the aborted output.\n", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * List the shards in the output directory in their order.
+     *
+     * @param out_dir
+     * @return
+     */
+    public static List<File> listShards(File out_dir) {
+        List<File> shards = new ArrayList<>();
+        File[] files = out_dir.listFiles((dir, name) -> name.startsWith("tables-") && name.endsWith(".json.gz"));
+        if (files != null) {
+            Arrays.sort(files);
+            shards.addAll(Arrays.asList(files));
+        }
+        return shards;
+    }
+
+    /**
+     * List the files of a table dump, which is either a single file as produced by parse_tables, or a directory of
+     * shards.
+     *
+     * @param dump
+     * @return
+     * @throws FileNotFoundException
+     */
+    public static List<File> listTableFiles(String dump) throws FileNotFoundException {
+        File dump_path = new File(dump);
+        if (!dump_path.isDirectory()) {
+            return Collections.singletonList(dump_path);
+        }
+        List<File> shards = listShards(dump_path);
+        if (shards.isEmpty()) {
+            throw new FileNotFoundException("No table shards found in " + dump);
+        }
+        return shards;
+    }
+
+    /**
+     * Open a reader over a file of a table dump, where the shards are decompressed.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static BufferedReader getTableReader(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file), 1 << 16), StandardCharsets.UTF_8), 1 << 20);
+        }
+        return FileUtils.getFileReader(file.getPath());
+    }
+
+    private ShardInfo newShard() {
+        ShardInfo info = new ShardInfo();
+        info.name = String.format("tables-%05d.json.gz", num_shards++);
+        return info;
+    }
+
+    /**
+     * Submit the current block for compression.
+     *
+     * @throws IOException
+     */
+    private void flushBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        byte[] data = block.toByteArray();
+        block.reset();
+        enqueue(compress_pool.submit(() -> compress(data)));
+    }
+
+    /**
+     * Add a compressed block or the end of a shard into the queue of the writer thread. In case the writer thread
+     * fails, we stop waiting on the full queue.
+     *
+     * @param item
+     * @throws IOException
+     */
+    private void enqueue(Object item) throws IOException {
+        try {
+            while (!blocks.offer(item, 1, TimeUnit.SECONDS)) {
+                if (write_error != null) {
+                    throw write_error;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the shards into " + out_dir, e);
+        }
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 1 << 16)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write the compressed blocks in order into the temporary shard files, and finalize the shards once all their
+     * blocks are written.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeBlocks() {
+        FileOutputStream out = null;
+        File tmp_file = null;
+        MessageDigest digest = null;
+        long compressed_bytes = 0;
+        int shard_idx = 0;
+        try {
+            Object item;
+            while ((item = blocks.take()) != EOF) {
+                if (item instanceof ShardInfo) {
+                    ShardInfo info = (ShardInfo) item;
+                    out.flush();
+                    out.getFD().sync();
+                    out.close();
+                    out = null;
+
+                    info.compressed_bytes = compressed_bytes;
+                    info.sha256 = toHex(digest.digest());
+                    Files.move(tmp_file.toPath(), new File(out_dir, info.name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    synchronized (manifest) {
+                        manifest.add(info);
+                    }
+                    continue;
+                }
+
+                byte[] data = ((Future<byte[]>) item).get();
+                if (out == null) {
+                    tmp_file = new File(out_dir, String.format("tables-%05d.json.gz.tmp", shard_idx++));
+                    out = new FileOutputStream(tmp_file);
+                    digest = MessageDigest.getInstance("SHA-256");
+                    compressed_bytes = 0;
+                }
+                out.write(data);
+                digest.update(data);
+                compressed_bytes += data.length;
+            }
+        } catch (IOException e) {
+            write_error = e;
+        } catch (InterruptedException e) {
+            write_error = new IOException("Interrupted while writing the shards into " + out_dir, e);
+        } catch (ExecutionException | NoSuchAlgorithmException e) {
+            write_error = new IOException("Failed writing the shards into " + out_dir, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    //the shard stays as a temporary file
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the manifest of the shards into a temporary file and atomically rename it.
+     *
+     * @throws IOException
+     */
+    private void writeManifest() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"shards\":[");
+        long total_tables = 0;
+        synchronized (manifest) {
+            for (int i = 0; i < manifest.size(); i++) {
+                ShardInfo info = manifest.get(i);
+                if (i != 0) {
+                    sb.append(",");
+                }
+                sb.append("\n{\"name\":\"").append(info.name).
+                        append("\", \"tables\":").append(info.tables).
+                        append(", \"min_table_id\":").append(info.tables == 0 ? -1 : info.min_table_id).
+                        append(", \"max_table_id\":").append(info.tables == 0 ? -1 : info.max_table_id).
+                        append(", \"uncompressed_bytes\":").append(info.uncompressed_bytes).
+                        append(", \"compressed_bytes\":").append(info.compressed_bytes).
+                        append(", \"sha256\":\"").append(info.sha256).append("\"}");
+                total_tables += info.tables;
+            }
+            sb.append("\n], \"num_shards\":").append(manifest.size()).append(", \"tables\":").append(total_tables).append("}\n");
+        }
+
+        File tmp_file = new File(out_dir, MANIFEST + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp_file)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(tmp_file.toPath(), new File(out_dir, MANIFEST).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The hex representation of a digest.
+     *
+     * @param bytes
+     * @return
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
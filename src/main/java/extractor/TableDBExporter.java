@@ -0,0 +1,239 @@
+package extractor;
+
+import datastruct.table.WikiColumnHeader;
+import datastruct.table.WikiTable;
+import datastruct.table.WikiTableCell;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Exports the extracted tables into an embedded, file-based H2 database. The schema is normalized into the tables,
+ * their headers, cells and the links found in the cells. The rows are inserted through batched prepared statements,
+ * which are committed periodically, while the indexes are built only once all the data has been loaded.
+ * <p>
+ * The exporter uses a single JDBC connection and is therefore not thread-safe, the tables should be handed to it from
+ * a single writer thread.
+ */
+public class TableDBExporter implements AutoCloseable {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE wiki_tables (table_id INT PRIMARY KEY, entity VARCHAR, section VARCHAR, caption VARCHAR, num_rows INT, num_columns INT, header_levels INT)",
+            "CREATE TABLE wiki_headers (table_id INT, level INT, col_index INT, name VARCHAR, col_span INT, row_span INT)",
+            "CREATE TABLE wiki_cells (table_id INT, row_index INT, col_index INT, column_name VARCHAR, cell_value VARCHAR)",
+            "CREATE TABLE wiki_links (table_id INT, row_index INT, col_index INT, structured VARCHAR, anchor VARCHAR)"
+    };
+
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_tables_entity ON wiki_tables(entity)",
+            "CREATE INDEX IF NOT EXISTS idx_tables_section ON wiki_tables(section)",
+            "CREATE INDEX IF NOT EXISTS idx_headers_table ON wiki_headers(table_id)",
+            "CREATE INDEX IF NOT EXISTS idx_headers_name ON wiki_headers(name)",
+            "CREATE INDEX IF NOT EXISTS idx_cells_table ON wiki_cells(table_id)",
+            "CREATE INDEX IF NOT EXISTS idx_cells_column ON wiki_cells(column_name)",
+            "CREATE INDEX IF NOT EXISTS idx_cells_value ON wiki_cells(cell_value)",
+            "CREATE INDEX IF NOT EXISTS idx_links_table ON wiki_links(table_id)",
+            "CREATE INDEX IF NOT EXISTS idx_links_structured ON wiki_links(structured)"
+    };
+
+    private Connection conn;
+    private PreparedStatement table_stmt;
+    private PreparedStatement header_stmt;
+    private PreparedStatement cell_stmt;
+    private PreparedStatement link_stmt;
+
+    //the number of statements after which we execute the batches, and the number of tables after which we commit.
+    private int batch_size;
+    private int commit_size;
+
+    private int pending_rows = 0;
+    private int pending_tables = 0;
+    private long num_tables = 0;
+    //whether the load failed, in which case the pending tables are discarded and the indexes are not built.
+    private boolean aborted = false;
+
+    /**
+     * Creates the H2 database at the given path. An existing database is refused, since the table ids of a new export
+     * would collide with the ones already in it.
+     *
+     * @param db_path     the path of the database file without the ".mv.db" extension.
+     * @param batch_size  the number of statements which are buffered before sending them to the database.
+     * @param commit_size the number of tables after which the transaction is committed.
+     * @throws SQLException
+     */
+    public TableDBExporter(String db_path, int batch_size, int commit_size) throws SQLException {
+        this.batch_size = batch_size;
+        this.commit_size = commit_size;
+
+        if (new File(db_path + ".mv.db").exists() || new File(db_path + ".h2.db").exists()) {
+            throw new SQLException("The database " + db_path + " already exists, please export into a new database.");
+        }
+        //the bulk load does not need the transaction log or the row locks, the database is written only by us.
+        conn = DriverManager.getConnection("jdbc:h2:" + db_path + ";LOG=0;LOCK_MODE=0", "sa", "");
+        conn.setAutoCommit(false);
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : SCHEMA) {
+                stmt.execute(ddl);
+            }
+        }
+        conn.commit();
+
+        table_stmt = conn.prepareStatement("INSERT INTO wiki_tables VALUES (?, ?, ?, ?, ?, ?, ?)");
+        header_stmt = conn.prepareStatement("INSERT INTO wiki_headers VALUES (?, ?, ?, ?, ?, ?)");
+        cell_stmt = conn.prepareStatement("INSERT INTO wiki_cells VALUES (?, ?, ?, ?, ?)");
+        link_stmt = conn.prepareStatement("INSERT INTO wiki_links VALUES (?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * Add a table into the database. The statements are only batched here, and sent to the database once the batch
+     * size is reached.
+     *
+     * @param tbl
+     * @throws SQLException
+     */
+    public void addTable(WikiTable tbl) throws SQLException {
+        int num_rows = tbl.cells == null ? 0 : tbl.cells.length;
+        int header_levels = tbl.columns == null ? 0 : tbl.columns.length;
+
+        table_stmt.setInt(1, tbl.table_id);
+        table_stmt.setString(2, tbl.entity);
+        table_stmt.setString(3, tbl.section);
+        table_stmt.setString(4, tbl.table_caption);
+        table_stmt.setInt(5, num_rows);
+        table_stmt.setInt(6, tbl.getNumColumns());
+        table_stmt.setInt(7, header_levels);
+        table_stmt.addBatch();
+        pending_rows++;
+
+        //add the headers across all the levels
+        for (int i = 0; i < header_levels; i++) {
+            for (int j = 0; j < tbl.columns[i].length; j++) {
+                WikiColumnHeader col = tbl.columns[i][j];
+                if (col == null) {
+                    continue;
+                }
+                header_stmt.setInt(1, tbl.table_id);
+                header_stmt.setInt(2, i);
+                header_stmt.setInt(3, j);
+                header_stmt.setString(4, col.column_name);
+                header_stmt.setInt(5, col.col_span);
+                header_stmt.setInt(6, col.row_span);
+                header_stmt.addBatch();
+                pending_rows++;
+            }
+        }
+
+        //add the cells and the links in the cells
+        for (int row = 0; row < num_rows; row++) {
+            for (int col = 0; col < tbl.cells[row].length; col++) {
+                WikiTableCell cell = tbl.cells[row][col];
+                if (cell == null || cell.col_header == null) {
+                    continue;
+                }
+                cell_stmt.setInt(1, tbl.table_id);
+                cell_stmt.setInt(2, row);
+                cell_stmt.setInt(3, col);
+                cell_stmt.setString(4, cell.col_header.column_name);
+                cell_stmt.setString(5, cell.value);
+                cell_stmt.addBatch();
+                pending_rows++;
+
+                if (cell.values == null) {
+                    continue;
+                }
+                for (Map.Entry<String, String> value : cell.values) {
+                    link_stmt.setInt(1, tbl.table_id);
+                    link_stmt.setInt(2, row);
+                    link_stmt.setInt(3, col);
+                    link_stmt.setString(4, value.getKey());
+                    link_stmt.setString(5, value.getValue());
+                    link_stmt.addBatch();
+                    pending_rows++;
+                }
+            }
+        }
+
+        num_tables++;
+        pending_tables++;
+        if (pending_rows >= batch_size) {
+            executeBatches();
+        }
+        if (pending_tables >= commit_size) {
+            executeBatches();
+            conn.commit();
+            pending_tables = 0;
+        }
+    }
+
+    /**
+     * Send all the buffered statements to the database.
+     *
+     * @throws SQLException
+     */
+    private void executeBatches() throws SQLException {
+        if (pending_rows == 0) {
+            return;
+        }
+        table_stmt.executeBatch();
+        header_stmt.executeBatch();
+        cell_stmt.executeBatch();
+        link_stmt.executeBatch();
+        pending_rows = 0;
+    }
+
+    /**
+     * Create the indexes over the loaded data. This is done once after the bulk load, as maintaining the indexes
+     * during the inserts is considerably slower.
+     *
+     * @throws SQLException
+     */
+    public void createIndexes() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : INDEXES) {
+                stmt.execute(ddl);
+            }
+        }
+        conn.commit();
+    }
+
+    public long getNumTables() {
+        return num_tables;
+    }
+
+    /**
+     * Mark the load as failed, such that on closing the pending tables are rolled back and no indexes are built.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    /**
+     * Flush the remaining statements, build the indexes and close the database. In case the load was aborted, the
+     * uncommitted tables are rolled back instead.
+     *
+     * @throws SQLException
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (aborted) {
+                conn.rollback();
+            } else {
+                executeBatches();
+                conn.commit();
+                createIndexes();
+            }
+        } finally {
+            table_stmt.close();
+            header_stmt.close();
+            cell_stmt.close();
+            link_stmt.close();
+            conn.close();
+        }
+    }
+}
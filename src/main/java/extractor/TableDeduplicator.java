@@ -0,0 +1,195 @@
+package extractor;
+
+import datastruct.table.WikiColumnHeader;
+import datastruct.table.WikiTable;
+import datastruct.table.WikiTableCell;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects near-duplicate tables during the extraction. For every table we compute a 64-bit SimHash over its normalized
+ * distinct header names and cell values, and look it up in a banded index. The fingerprint is split into max_distance + 1
+ * bands, such that two fingerprints within the maximal Hamming distance share at least one band, and only the tables
+ * sharing a band are compared.
+ * <p>
+ * The index is concurrent, however, the lookup and the insertion of a table are not atomic, hence, two near-duplicate
+ * tables which are processed at the same time may both be kept as canonical tables.
+ */
+public class TableDeduplicator {
+    //tables with fewer features have too unreliable fingerprints, and are never considered duplicates.
+    public static final int MIN_FEATURES = 5;
+
+    //whether the duplicates are dropped, otherwise they are tagged with the id of their canonical table.
+    public boolean drop;
+    public int max_distance;
+
+    private int bands;
+    private int band_bits;
+    private ConcurrentHashMap<Long, Queue<long[]>>[] band_index;
+
+    public AtomicLong checked_tables = new AtomicLong();
+    public AtomicLong duplicate_tables = new AtomicLong();
+    public AtomicLong small_tables = new AtomicLong();
+
+    /**
+     * @param similarity the minimal share of equal bits in the fingerprints of two near-duplicate tables.
+     * @param drop       whether to drop the duplicates or tag them with their canonical table id.
+     */
+    @SuppressWarnings("unchecked")
+    public TableDeduplicator(double similarity, boolean drop) {
+        this.drop = drop;
+        this.max_distance = (int) Math.floor((1 - similarity) * 64 + 1e-9);
+        this.bands = Math.min(max_distance + 1, 64);
+        this.band_bits = 64 / bands;
+
+        band_index = new ConcurrentHashMap[bands];
+        for (int i = 0; i < bands; i++) {
+            band_index[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Find the canonical table of which the given table is a near-duplicate. In case there is none, the table is
+     * added into the index as a canonical table and we return -1. The canonical table is the first one added into
+     * the index, which under parallel extraction is not necessarily the table with the lowest id.
+     *
+     * @param tbl
+     * @return
+     */
+    public int findOrAdd(WikiTable tbl) {
+        checked_tables.incrementAndGet();
+        int[] num_features = new int[1];
+        long fingerprint = computeFingerprint(tbl, num_features);
+        if (num_features[0] < MIN_FEATURES) {
+            small_tables.incrementAndGet();
+            return -1;
+        }
+
+        for (int band = 0; band < bands; band++) {
+            Queue<long[]> candidates = band_index[band].get(getBand(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (long[] candidate : candidates) {
+                if (Long.bitCount(candidate[0] ^ fingerprint) <= max_distance) {
+                    duplicate_tables.incrementAndGet();
+                    return (int) candidate[1];
+                }
+            }
+        }
+
+        long[] entry = {fingerprint, tbl.table_id};
+        for (int band = 0; band < bands; band++) {
+            band_index[band].computeIfAbsent(getBand(fingerprint, band), k -> new ConcurrentLinkedQueue<>()).add(entry);
+        }
+        return -1;
+    }
+
+    /**
+     * The bits of the fingerprint for the given band, where the last band takes the remaining bits.
+     *
+     * @param fingerprint
+     * @param band
+     * @return
+     */
+    private long getBand(long fingerprint, int band) {
+        int shift = band * band_bits;
+        int bits = band == bands - 1 ? 64 - shift : band_bits;
+        return bits == 64 ? fingerprint : (fingerprint >>> shift) & ((1L << bits) - 1);
+    }
+
+    /**
+     * Compute the SimHash of the table, where the features are the distinct normalized column names in all the header
+     * levels and the distinct normalized cell values. Every feature is counted once, such that a value repeated over
+     * the table does not decide the fingerprint, and empty or placeholder cells, e.g. "-" or "n/a", are left out.
+     *
+     * @param tbl
+     * @param num_features returns the number of distinct features of the table.
+     * @return
+     */
+    public static long computeFingerprint(WikiTable tbl, int[] num_features) {
+        Set<String> features = new HashSet<>();
+        if (tbl.columns != null) {
+            for (WikiColumnHeader[] level : tbl.columns) {
+                for (WikiColumnHeader col : level) {
+                    if (col != null) {
+                        features.add("h:" + normalize(col.column_name));
+                    }
+                }
+            }
+        }
+        if (tbl.cells != null) {
+            for (WikiTableCell[] row : tbl.cells) {
+                for (WikiTableCell cell : row) {
+                    if (cell == null) {
+                        continue;
+                    }
+                    String value = ColumnTypeInference.normalizeValue(cell.value);
+                    if (!value.isEmpty()) {
+                        features.add("c:" + normalize(value));
+                    }
+                }
+            }
+        }
+
+        int[] bit_weights = new int[64];
+        for (String feature : features) {
+            addFeature(bit_weights, feature);
+        }
+        num_features[0] = features.size();
+
+        long fingerprint = 0;
+        for (int i = 0; i < 64; i++) {
+            if (bit_weights[i] > 0) {
+                fingerprint |= 1L << i;
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void addFeature(int[] bit_weights, String feature) {
+        long hash = hash64(feature);
+        for (int i = 0; i < 64; i++) {
+            bit_weights[i] += ((hash >>> i) & 1) == 1 ? 1 : -1;
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes of the feature, followed by a final mixing step to spread the bits.
+     *
+     * @param feature
+     * @return
+     */
+    public static long hash64(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Normalize a column name or a cell value by lowercasing it and collapsing its whitespace.
+     *
+     * @param value
+     * @return
+     */
+    public static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase().replaceAll("\\s+", " ").trim();
+    }
+
+    public String getStatistics() {
+        return String.format("Deduplication checked %d tables, found %d near-duplicates (%s), and skipped %d tables with fewer than %d features.",
+                checked_tables.get(), duplicate_tables.get(), drop ? "dropped" : "tagged", small_tables.get(), MIN_FEATURES);
+    }
+}
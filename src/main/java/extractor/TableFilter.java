@@ -0,0 +1,174 @@
+package extractor;
+
+import datastruct.table.WikiColumnHeader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A filter on the extracted tables, which is evaluated at the earliest stage where it can be decided: the entity
+ * once the article is parsed, the section names before any of their tables are touched, and the header and the
+ * number of rows and columns after the header is built but before the cells of a table are built.
+ * <p>
+ * The filter is given as a conjunction of conditions separated by "&&", e.g.
+ * <pre>
+ *     rows>=5 && cols>=3 && section in Results|Career && header ~ (?i)year
+ * </pre>
+ * where rows and cols can be compared with >=, <=, >, < and =, section takes a list of section names separated by
+ * "|" (case insensitive), and header and entity take a regular expression which has to be found in at least one of
+ * the column names in the lowest level of the header, or respectively in the entity.
+ */
+public class TableFilter {
+    private static final Pattern COUNT_CONDITION = Pattern.compile("(rows|cols)\\s*(>=|<=|>|<|=)\\s*(\\d+)");
+    private static final Pattern SECTION_CONDITION = Pattern.compile("section\\s+in\\s+(.+)");
+    private static final Pattern REGEX_CONDITION = Pattern.compile("(header|entity)\\s*~\\s*(.+)");
+
+    private int min_rows = 0, max_rows = Integer.MAX_VALUE;
+    private int min_cols = 0, max_cols = Integer.MAX_VALUE;
+    private Set<String> sections;
+    private List<Pattern> header_patterns = new ArrayList<>();
+    private List<Pattern> entity_patterns = new ArrayList<>();
+
+    //the statistics on what was pruned at each stage.
+    public AtomicLong pruned_articles = new AtomicLong();
+    public AtomicLong pruned_sections = new AtomicLong();
+    public AtomicLong pruned_tables_header = new AtomicLong();
+    public AtomicLong pruned_tables_rows = new AtomicLong();
+    public AtomicLong pruned_tables_cols = new AtomicLong();
+    public AtomicLong accepted_tables = new AtomicLong();
+
+    /**
+     * Parse the filter expression.
+     *
+     * @param expression
+     * @return
+     */
+    public static TableFilter parse(String expression) {
+        TableFilter filter = new TableFilter();
+        for (String condition : expression.split("&&")) {
+            condition = condition.trim();
+            if (condition.isEmpty()) {
+                continue;
+            }
+
+            Matcher m;
+            if ((m = COUNT_CONDITION.matcher(condition)).matches()) {
+                filter.addCountCondition(m.group(1), m.group(2), Integer.parseInt(m.group(3)));
+            } else if ((m = SECTION_CONDITION.matcher(condition)).matches()) {
+                filter.sections = new HashSet<>();
+                for (String section : m.group(1).split("\\|")) {
+                    filter.sections.add(section.trim().toLowerCase());
+                }
+            } else if ((m = REGEX_CONDITION.matcher(condition)).matches()) {
+                Pattern pattern = Pattern.compile(m.group(2).trim());
+                (m.group(1).equals("header") ? filter.header_patterns : filter.entity_patterns).add(pattern);
+            } else {
+                throw new IllegalArgumentException("Unknown filter condition: " + condition);
+            }
+        }
+        return filter;
+    }
+
+    private void addCountCondition(String field, String op, int value) {
+        int min = 0, max = Integer.MAX_VALUE;
+        switch (op) {
+            case ">=":
+                min = value;
+                break;
+            case ">":
+                min = value + 1;
+                break;
+            case "<=":
+                max = value;
+                break;
+            case "<":
+                max = value - 1;
+                break;
+            default:
+                min = value;
+                max = value;
+        }
+        if (field.equals("rows")) {
+            min_rows = Math.max(min_rows, min);
+            max_rows = Math.min(max_rows, max);
+        } else {
+            min_cols = Math.max(min_cols, min);
+            max_cols = Math.min(max_cols, max);
+        }
+    }
+
+    /**
+     * Check the entity of an article, before any of its sections are processed.
+     *
+     * @param entity
+     * @return
+     */
+    public boolean acceptEntity(String entity) {
+        for (Pattern pattern : entity_patterns) {
+            if (!pattern.matcher(entity).find()) {
+                pruned_articles.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the name of a section, before any of its tables are processed.
+     *
+     * @param section_name
+     * @return
+     */
+    public boolean acceptSection(String section_name) {
+        if (sections != null && !sections.contains(section_name.trim().toLowerCase())) {
+            pruned_sections.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check the header and the number of data rows and columns of a table, before its cells are built.
+     *
+     * @param columns
+     * @param num_rows
+     * @param num_cols the width of the table, which can be larger than the header.
+     * @return
+     */
+    public boolean acceptTable(WikiColumnHeader[][] columns, int num_rows, int num_cols) {
+        if (num_rows < min_rows || num_rows > max_rows) {
+            pruned_tables_rows.incrementAndGet();
+            return false;
+        }
+
+        if (num_cols < min_cols || num_cols > max_cols) {
+            pruned_tables_cols.incrementAndGet();
+            return false;
+        }
+
+        WikiColumnHeader[] header = columns.length == 0 ? new WikiColumnHeader[0] : columns[columns.length - 1];
+        for (Pattern pattern : header_patterns) {
+            boolean found = false;
+            for (int j = 0; j < header.length && !found; j++) {
+                found = header[j] != null && pattern.matcher(header[j].column_name).find();
+            }
+            if (!found) {
+                pruned_tables_header.incrementAndGet();
+                return false;
+            }
+        }
+        accepted_tables.incrementAndGet();
+        return true;
+    }
+
+    public String getStatistics() {
+        return String.format("Filter pruned %d articles, %d sections, %d tables by rows, %d tables by columns and %d tables by header, and accepted %d tables.",
+                pruned_articles.get(), pruned_sections.get(), pruned_tables_rows.get(), pruned_tables_cols.get(),
+                pruned_tables_header.get(), accepted_tables.get());
+    }
+}
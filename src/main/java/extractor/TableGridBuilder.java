@@ -0,0 +1,345 @@
+package extractor;
+
+import datastruct.table.WikiColumnHeader;
+import datastruct.table.WikiTable;
+import datastruct.table.WikiTableCell;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the header and the cell grid of a table in a single pass over its rows, following the table forming
+ * algorithm of HTML. Every cell is placed into the first free slot of its row, and occupies the slots covered by its
+ * row and column span. The width of the grid grows with the widest row, instead of being fixed by the first header row.
+ * <p>
+ * The header rows and the data rows are treated as separate row groups, hence, a row span does not extend from the
+ * header into the data rows. Some tables contain labels which are header rows spanning across all columns and they
+ * appear after data rows. In this case we split the table into multiple sub-tables, where each sub-table keeps the
+ * header of the first sub-table and the label as the top level of its header.
+ */
+public class TableGridBuilder {
+    /**
+     * The rows of a sub-table, split into the header rows and the data rows.
+     */
+    public static class TableSegment {
+        public List<Element> header_rows = new ArrayList<>();
+        public List<Element> data_rows = new ArrayList<>();
+    }
+
+    /**
+     * Parse the HTML table into its sub-tables.
+     *
+     * @param table
+     * @return
+     */
+    public static List<WikiTable> buildTables(Element table) {
+        return buildTables(table, null);
+    }
+
+    /**
+     * Parse the HTML table into its sub-tables. The sub-tables which are rejected by the filter based on their header
+     * and number of rows are skipped before their cells are built.
+     *
+     * @param table
+     * @param filter the filter on the sub-tables, can be null.
+     * @return
+     */
+    public static List<WikiTable> buildTables(Element table, TableFilter filter) {
+        List<TableSegment> segments = segmentTable(table);
+        List<WikiTable> tables = new ArrayList<>();
+
+        WikiColumnHeader[][] first_header = null;
+        for (TableSegment segment : segments) {
+            if (segment.header_rows.isEmpty() && segment.data_rows.isEmpty()) {
+                continue;
+            }
+            WikiColumnHeader[][] header = buildHeader(segment, first_header);
+            if (first_header == null) {
+                first_header = header;
+            }
+            if (filter != null) {
+                //the data rows can be wider than the header, in which case the table takes their width.
+                int width = header.length == 0 ? 0 : header[header.length - 1].length;
+                if (!filter.acceptTable(header, segment.data_rows.size(), Math.max(width, computeWidth(segment.data_rows)))) {
+                    continue;
+                }
+            }
+            tables.add(buildTable(segment, header));
+        }
+        return tables;
+    }
+
+    /**
+     * Split the rows of the table into sub-tables. A header row which appears after data rows marks the beginning of
+     * a new sub-table. Rows without any cells are skipped.
+     *
+     * @param table
+     * @return
+     */
+    public static List<TableSegment> segmentTable(Element table) {
+        List<TableSegment> segments = new ArrayList<>();
+        TableSegment segment = new TableSegment();
+        segments.add(segment);
+
+        for (Element row : table.select("tr")) {
+            boolean is_header = false, is_data = false;
+            for (Element cell : row.children()) {
+                if (cell.tagName().equals("td")) {
+                    is_data = true;
+                } else if (cell.tagName().equals("th")) {
+                    is_header = true;
+                }
+            }
+
+            if (is_data) {
+                segment.data_rows.add(row);
+            } else if (is_header) {
+                if (!segment.data_rows.isEmpty()) {
+                    segment = new TableSegment();
+                    segments.add(segment);
+                }
+                segment.header_rows.add(row);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Build the header grid of a sub-table. For sub-tables after the first one, whose header consists only of a label
+     * spanning the table, the header of the first sub-table is copied below the label. In case there are no header
+     * rows, the first data row is taken as the header.
+     *
+     * @param segment
+     * @param first_header the header of the first sub-table, or null if this is the first sub-table.
+     * @return
+     */
+    public static WikiColumnHeader[][] buildHeader(TableSegment segment, WikiColumnHeader[][] first_header) {
+        List<Element> rows = segment.header_rows;
+        if (rows.isEmpty()) {
+            if (segment.data_rows.isEmpty()) {
+                return new WikiColumnHeader[0][0];
+            }
+            rows = segment.data_rows.subList(0, 1);
+        }
+
+        List<List<WikiColumnHeader>> grid = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            grid.add(new ArrayList<>());
+        }
+
+        int width = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            int k = 0;
+            for (Element th_header : rows.get(i).children()) {
+                if (!isCell(th_header)) {
+                    continue;
+                }
+                int col_span = WikiTableCell.parseSpan(th_header, "colspan");
+                int row_span = WikiTableCell.parseSpan(th_header, "rowspan");
+                row_span = row_span == 0 ? rows.size() - i : row_span;
+
+                WikiColumnHeader col = new WikiColumnHeader(th_header.text(), row_span, col_span);
+                k = placeInGrid(grid, col, i, k, row_span, col_span);
+                width = Math.max(width, k);
+            }
+        }
+
+        WikiColumnHeader[][] columns;
+        if (first_header != null && first_header.length != 0 && isLabelHeader(grid)) {
+            //the label is the top level of the header, followed by a copy of the header from the first sub-table.
+            width = Math.max(width, first_header[0].length);
+            columns = new WikiColumnHeader[first_header.length + 1][];
+            columns[0] = toArray(grid.get(0), width);
+
+            Map<WikiColumnHeader, WikiColumnHeader> copies = new IdentityHashMap<>();
+            for (int i = 0; i < first_header.length; i++) {
+                columns[i + 1] = new WikiColumnHeader[width];
+                for (int j = 0; j < first_header[i].length; j++) {
+                    WikiColumnHeader col = first_header[i][j];
+                    if (col != null) {
+                        columns[i + 1][j] = copies.computeIfAbsent(col, c -> new WikiColumnHeader(c.column_name, c.row_span, c.col_span));
+                    }
+                }
+            }
+        } else {
+            columns = new WikiColumnHeader[grid.size()][];
+            for (int i = 0; i < grid.size(); i++) {
+                columns[i] = toArray(grid.get(i), width);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Compute the width of the grid of the given rows, by placing only the spans of the cells without building them.
+     *
+     * @param rows
+     * @return
+     */
+    public static int computeWidth(List<Element> rows) {
+        //the number of rows for which every slot is still occupied by a row span from above.
+        List<Integer> occupied = new ArrayList<>();
+        int width = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            int k = 0;
+            for (Element cell : rows.get(i).children()) {
+                if (!isCell(cell)) {
+                    continue;
+                }
+                while (k < occupied.size() && occupied.get(k) > 0) {
+                    k++;
+                }
+                int col_span = WikiTableCell.parseSpan(cell, "colspan");
+                int row_span = WikiTableCell.parseSpan(cell, "rowspan");
+                row_span = row_span == 0 ? rows.size() - i : row_span;
+
+                while (occupied.size() < k + col_span) {
+                    occupied.add(0);
+                }
+                for (int j = k; j < k + col_span; j++) {
+                    occupied.set(j, row_span);
+                }
+                k += col_span;
+                width = Math.max(width, k);
+            }
+            for (int j = 0; j < occupied.size(); j++) {
+                occupied.set(j, Math.max(0, occupied.get(j) - 1));
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Place the data rows of the sub-table into its cell grid. Every cell is assigned to the column in the lowest
+     * level of the header at the slot where the cell starts, and updates the value distribution of that column. For
+     * slots without a header column, e.g. when a row is wider than the header, we add a column with an empty name to
+     * the lowest header level, such that the cells in those slots are kept.
+     *
+     * @param segment
+     * @param columns
+     * @return
+     */
+    public static WikiTable buildTable(TableSegment segment, WikiColumnHeader[][] columns) {
+        List<Element> rows = segment.data_rows;
+        List<WikiColumnHeader> header = new ArrayList<>();
+        if (columns.length != 0) {
+            header.addAll(Arrays.asList(columns[columns.length - 1]));
+        }
+
+        List<List<WikiTableCell>> grid = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            grid.add(new ArrayList<>());
+        }
+
+        int width = header.size();
+        for (int i = 0; i < rows.size(); i++) {
+            int k = 0;
+            for (Element cell_value : rows.get(i).children()) {
+                if (!isCell(cell_value)) {
+                    continue;
+                }
+                WikiTableCell cell = new WikiTableCell(cell_value, null);
+                cell.row_span = cell.row_span == 0 ? rows.size() - i : cell.row_span;
+
+                k = placeInGrid(grid, cell, i, k, cell.row_span, cell.col_span);
+                width = Math.max(width, k);
+
+                int slot = k - cell.col_span;
+                while (header.size() < k) {
+                    header.add(null);
+                }
+                if (header.get(slot) == null) {
+                    header.set(slot, new WikiColumnHeader("", 1, 1));
+                }
+                cell.col_header = header.get(slot);
+                cell.col_header.updateValueDistribution(cell);
+            }
+        }
+
+        WikiTable tbl = new WikiTable();
+        //rows which are wider than the header get empty slots in the upper header levels.
+        tbl.columns = new WikiColumnHeader[Math.max(1, columns.length)][];
+        for (int i = 0; i < columns.length - 1; i++) {
+            tbl.columns[i] = columns[i].length == width ? columns[i] : Arrays.copyOf(columns[i], width);
+        }
+        tbl.columns[tbl.columns.length - 1] = toArray(header, width);
+        tbl.cells = new WikiTableCell[rows.size()][width];
+        for (int i = 0; i < rows.size(); i++) {
+            List<WikiTableCell> row = grid.get(i);
+            for (int j = 0; j < row.size(); j++) {
+                tbl.cells[i][j] = row.get(j);
+            }
+        }
+        return tbl;
+    }
+
+    /**
+     * Place an item into the first free slot of the row starting from the given column, and occupy all the slots
+     * covered by its spans. The spans are clipped at the last row of the grid.
+     *
+     * @param grid
+     * @param item
+     * @param row_idx
+     * @param col_idx
+     * @param row_span
+     * @param col_span
+     * @param <T>
+     * @return the column after the placed item.
+     */
+    private static <T> int placeInGrid(List<List<T>> grid, T item, int row_idx, int col_idx, int row_span, int col_span) {
+        List<T> row = grid.get(row_idx);
+        while (col_idx < row.size() && row.get(col_idx) != null) {
+            col_idx++;
+        }
+
+        for (int i = row_idx; i < row_idx + row_span && i < grid.size(); i++) {
+            List<T> span_row = grid.get(i);
+            while (span_row.size() < col_idx + col_span) {
+                span_row.add(null);
+            }
+            for (int j = col_idx; j < col_idx + col_span; j++) {
+                span_row.set(j, item);
+            }
+        }
+        return col_idx + col_span;
+    }
+
+    /**
+     * A header consisting of a single row with a single cell is a label of a sub-table.
+     *
+     * @param grid
+     * @return
+     */
+    private static boolean isLabelHeader(List<List<WikiColumnHeader>> grid) {
+        if (grid.size() != 1) {
+            return false;
+        }
+        WikiColumnHeader label = null;
+        for (WikiColumnHeader col : grid.get(0)) {
+            if (col == null) {
+                continue;
+            }
+            if (label != null && label != col) {
+                return false;
+            }
+            label = col;
+        }
+        return label != null;
+    }
+
+    private static WikiColumnHeader[] toArray(List<WikiColumnHeader> row, int width) {
+        WikiColumnHeader[] cols = new WikiColumnHeader[width];
+        for (int j = 0; j < row.size() && j < width; j++) {
+            cols[j] = row.get(j);
+        }
+        return cols;
+    }
+
+    private static boolean isCell(Element element) {
+        return element.tagName().equals("td") || element.tagName().equals("th");
+    }
+}
@@ -0,0 +1,35 @@
+package extractor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The output of the extracted tables. The output is written in chunks of complete article lines, along with the
+ * number of tables in the chunk and the range of their ids. The sinks are shared by the parsing threads and have to
+ * be thread-safe.
+ */
+public interface TableOutputSink extends Closeable {
+    void write(String chunk, int num_tables, int min_table_id, int max_table_id) throws IOException;
+
+    /**
+     * Stop the output after a failed run, instead of close. The output which is not complete is discarded where the
+     * format allows it.
+     */
+    void abort();
+
+    /**
+     * Open the sink for the output format set in the options.
+     *
+     * @param out
+     * @param options
+     * @return
+     * @throws IOException
+     */
+    static TableOutputSink open(String out, ParseOptions options) throws IOException {
+        if (options.output_format.equals("sharded")) {
+            return new ShardedOutputSink(new File(out), options.shard_bytes, options.compress_threads);
+        }
+        return new FileOutputSink(out);
+    }
+}
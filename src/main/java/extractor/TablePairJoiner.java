@@ -0,0 +1,177 @@
+package extractor;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+import io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins the ground-truth table pairs with the table dump. We first read the pairs and collect the ids of the tables
+ * they need, then stream the dump once and keep only the needed tables, and finally emit the pairs in their original
+ * order along with the JSON of both tables. The memory is bounded by the tables which are needed by the pairs.
+ * <p>
+ * The pair file is tab separated, with the source and matching table ids in the 5th and 6th column, as in the
+ * evaluation ground-truth. Lines whose ids cannot be parsed (e.g. the header) are skipped.
+ */
+public class TablePairJoiner {
+    public static final int SOURCE_ID_COL = 4;
+    public static final int TARGET_ID_COL = 5;
+
+    /**
+     * Receives the joined pairs, e.g. for writing them or for computing their features.
+     */
+    public interface TablePairConsumer {
+        void accept(String[] pair, String source_table_json, String target_table_json) throws IOException;
+    }
+
+    /**
+     * Join the pairs with the tables from the dump and write them into the output file. Every line consists of the
+     * fields of the pair, followed by the JSON of the source and the matching table.
+     *
+     * @param pairs_file
+     * @param dump_file
+     * @param out_file
+     * @throws IOException
+     */
+    public static void joinPairs(String pairs_file, String dump_file, String out_file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out_file), StandardCharsets.UTF_8), 1 << 20)) {
+            joinPairs(pairs_file, dump_file, (pair, source_table_json, target_table_json) -> {
+                writer.append(String.join("\t", pair)).append("\t").append(source_table_json).append("\t").append(target_table_json).append("\n");
+            });
+        }
+    }
+
+    /**
+     * Join the pairs with the tables from the dump and pass them to the consumer in the order of the pair file.
+     * Pairs for which one of the tables is missing in the dump are skipped.
+     *
+     * @param pairs_file
+     * @param dump_file
+     * @param consumer
+     * @throws IOException
+     */
+    public static void joinPairs(String pairs_file, String dump_file, TablePairConsumer consumer) throws IOException {
+        List<String[]> pairs = new ArrayList<>();
+        TIntHashSet needed_ids = new TIntHashSet();
+        readPairs(pairs_file, pairs, needed_ids);
+        System.out.printf("Loaded %d pairs which need %d tables.\n", pairs.size(), needed_ids.size());
+
+        TIntObjectHashMap<String> tables = loadTables(dump_file, needed_ids);
+        System.out.printf("Found %d out of %d tables in the dump.\n", tables.size(), needed_ids.size());
+
+        int missing = 0;
+        for (String[] pair : pairs) {
+            String source_table = tables.get(Integer.parseInt(pair[SOURCE_ID_COL].trim()));
+            String target_table = tables.get(Integer.parseInt(pair[TARGET_ID_COL].trim()));
+            if (source_table == null || target_table == null) {
+                missing++;
+                continue;
+            }
+            consumer.accept(pair, source_table, target_table);
+        }
+        System.out.printf("Finished joining %d pairs, and %d pairs had missing tables.\n", pairs.size() - missing, missing);
+    }
+
+    /**
+     * Read the pairs and collect the ids of the tables they need.
+     *
+     * @param pairs_file
+     * @param pairs
+     * @param needed_ids
+     * @throws IOException
+     */
+    public static void readPairs(String pairs_file, List<String[]> pairs, TIntHashSet needed_ids) throws IOException {
+        BufferedReader reader = FileUtils.getFileReader(pairs_file);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] pair = line.split("\t");
+            if (pair.length <= TARGET_ID_COL) {
+                continue;
+            }
+            try {
+                int source_id = Integer.parseInt(pair[SOURCE_ID_COL].trim());
+                int target_id = Integer.parseInt(pair[TARGET_ID_COL].trim());
+                needed_ids.add(source_id);
+                needed_ids.add(target_id);
+                pairs.add(pair);
+            } catch (NumberFormatException e) {
+                //the header of the pair file
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Stream the dump and keep the JSON of the needed tables. The dump is either a single file, or a directory of
+     * shards from the sharded output, which are read in their order. Articles which do not contain any of the needed
+     * ids are skipped without parsing their JSON, and the streaming stops once all the needed tables are found.
+     *
+     * @param dump_file
+     * @param needed_ids
+     * @return
+     * @throws IOException
+     */
+    public static TIntObjectHashMap<String> loadTables(String dump_file, TIntHashSet needed_ids) throws IOException {
+        TIntObjectHashMap<String> tables = new TIntObjectHashMap<>(needed_ids.size());
+        for (File file : ShardedOutputSink.listTableFiles(dump_file)) {
+            if (tables.size() >= needed_ids.size()) {
+                break;
+            }
+            BufferedReader reader = ShardedOutputSink.getTableReader(file);
+            String line;
+            while ((line = reader.readLine()) != null && tables.size() < needed_ids.size()) {
+                if (!containsNeededId(line, needed_ids)) {
+                    continue;
+                }
+
+                JSONArray sections = new JSONObject(line).getJSONArray("sections");
+                for (int i = 0; i < sections.length(); i++) {
+                    JSONArray section_tables = sections.getJSONObject(i).getJSONArray("tables");
+                    for (int j = 0; j < section_tables.length(); j++) {
+                        JSONObject table = section_tables.getJSONObject(j);
+                        int table_id = table.getInt("id");
+                        if (needed_ids.contains(table_id) && !tables.containsKey(table_id)) {
+                            tables.put(table_id, table.toString());
+                        }
+                    }
+                }
+            }
+            reader.close();
+        }
+        return tables;
+    }
+
+    /**
+     * Check if any of the table ids in the article line is needed, by scanning for the "id" fields of the tables.
+     * Since the JSON strings are escaped, the quotes within the values cannot produce a false "id" field.
+     *
+     * @param line
+     * @param needed_ids
+     * @return
+     */
+    private static boolean containsNeededId(String line, TIntHashSet needed_ids) {
+        String id_field = "\"id\":";
+        int idx = line.indexOf(id_field);
+        while (idx != -1) {
+            int start = idx + id_field.length();
+            while (start < line.length() && line.charAt(start) == ' ') {
+                start++;
+            }
+            int end = start;
+            while (end < line.length() && Character.isDigit(line.charAt(end))) {
+                end++;
+            }
+            if (end > start && end - start < 10 && needed_ids.contains(Integer.parseInt(line.substring(start, end)))) {
+                return true;
+            }
+            idx = line.indexOf(id_field, end);
+        }
+        return false;
+    }
+}
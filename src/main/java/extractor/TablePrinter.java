@@ -1,5 +1,6 @@
 package extractor;
 
+import datastruct.table.TypedColumn;
 import datastruct.table.WikiColumnHeader;
 import datastruct.table.WikiTable;
 import datastruct.table.WikiTableCell;
@@ -24,6 +25,9 @@ public class TablePrinter {
         sb.append("{\"caption\":\"").append(StringEscapeUtils.escapeJson(table.table_caption)).append("\", ");
         sb.append("\"markup\":\"").append(StringEscapeUtils.escapeJson(table.markup)).append("\",");
         sb.append("\"id\":").append(table.table_id).append(", ");
+        if (table.canonical_table_id != -1) {
+            sb.append("\"canonical_id\":").append(table.canonical_table_id).append(", ");
+        }
         sb.append("\"header\":[");
         //first print all the columns, as the table header
         for (int i = 0; i < table.columns.length; i++) {
@@ -58,7 +62,12 @@ public class TablePrinter {
                                 append("\",\"count\":").append(value.getValue()).append("}");
                     }
                 }
-                sb.append("]}");
+                sb.append("]");
+                if (col.typed_column != null) {
+                    sb.append(", ");
+                    printTypedColumnToJSON(col.typed_column, sb);
+                }
+                sb.append("}");
                 column_counter++;
             }
             sb.append("]}");
@@ -109,4 +118,33 @@ public class TablePrinter {
         sb.append("]}");
         return sb.toString();
     }
+
+    /**
+     * Print the type of a column and the statistics of its values. For dates the statistics are over the epoch days.
+     *
+     * @param typed_column
+     * @param sb
+     */
+    public static void printTypedColumnToJSON(TypedColumn typed_column, StringBuffer sb) {
+        sb.append("\"value_type\":\"").append(typed_column.type.name().toLowerCase()).append("\", \"stats\":{");
+        sb.append("\"count\":").append(typed_column.num_values).
+                append(", \"nulls\":").append(typed_column.getNumRows() - typed_column.num_values).
+                append(", \"min\":").append(typed_column.min).
+                append(", \"max\":").append(typed_column.max).
+                append(", \"quantiles\":[");
+        for (int k = 0; k < typed_column.quantiles.length; k++) {
+            if (k != 0) {
+                sb.append(",");
+            }
+            sb.append(typed_column.quantiles[k]);
+        }
+        sb.append("], \"histogram\":[");
+        for (int k = 0; k < typed_column.histogram.length; k++) {
+            if (k != 0) {
+                sb.append(",");
+            }
+            sb.append(typed_column.histogram[k]);
+        }
+        sb.append("]}");
+    }
 }